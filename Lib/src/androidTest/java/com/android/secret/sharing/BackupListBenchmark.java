@@ -0,0 +1,86 @@
+package com.android.secret.sharing;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Compares listing 5k backups with their encrypted data to listing only their metadata. Latency and
+ * the heap held by the result are logged with the tag of this class.
+ */
+public class BackupListBenchmark extends AndroidTestCase {
+    private static final String TAG = "BackupListBenchmark";
+
+    private static final int BACKUP_COUNT = 5000;
+    private static final int DATA_LENGTH = 4096;
+    private static final int RUNS = 5;
+
+    private DatabaseHelper mHelper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        mHelper = TestDatabase.reset(getContext());
+        TestDatabase.insertBackups(mHelper, BACKUP_COUNT, DATA_LENGTH);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestDatabase.reset(getContext());
+        super.tearDown();
+    }
+
+    public void testListBackups() {
+        long fullTime = Long.MAX_VALUE;
+        long summaryTime = Long.MAX_VALUE;
+
+        // first runs warm up the JIT, the fastest run is reported
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            assertEquals(BACKUP_COUNT, mHelper.getBackups().length);
+            fullTime = Math.min(fullTime, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            assertEquals(BACKUP_COUNT, mHelper.getBackupSummaries().length);
+            summaryTime = Math.min(summaryTime, System.nanoTime() - start);
+        }
+
+        long heap = usedHeap();
+        Backup[] backups = mHelper.getBackups();
+        long fullMemory = usedHeap() - heap;
+
+        heap = usedHeap();
+        BackupSummary[] summaries = mHelper.getBackupSummaries();
+        long summaryMemory = usedHeap() - heap;
+
+        // keep the results reachable until they are measured
+        assertEquals(backups.length, summaries.length);
+
+        Log.i(TAG, String.format(Locale.US, "%d backups: with data %.2f ms, %d KB; metadata only %.2f ms, %d KB",
+                BACKUP_COUNT, fullTime / 1e6, fullMemory / 1024, summaryTime / 1e6, summaryMemory / 1024));
+    }
+
+    public void testSummariesMatchBackups() {
+        Backup[] backups = mHelper.getBackups();
+        BackupSummary[] summaries = mHelper.getBackupSummaries();
+
+        assertEquals(backups.length, summaries.length);
+        for (int i = 0; i < backups.length; i++) {
+            assertEquals(backups[i].getName(), summaries[i].getName());
+            assertEquals(backups[i].getTimestamp(), summaries[i].getTimestamp());
+        }
+
+        // every second backup has data
+        assertEquals(BACKUP_COUNT / 2, mHelper.getAvailableBackupSummaries().length);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        runtime.gc();
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,68 @@
+package com.android.secret.sharing;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.KeyPairGenerator;
+
+/**
+ * Restores backups of a new container from streams with
+ * {@link Container#restoreBackup(KeyPart[], java.io.InputStream, java.io.OutputStream)}.
+ */
+public class ContainerRestoreTest extends AndroidTestCase {
+    private static final String SECRET = "{\"name\":\"secret\",\"value\":\"42\"}";
+
+    private Container mContainer;
+    private KeyPart[] mKeyParts;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestDatabase.reset(getContext());
+
+        mContainer = new ContainerImpl();
+        mContainer.setName("Test");
+        mContainer.setTotalParts(3);
+        mContainer.setMinimumRecoverParts(2);
+        mKeyParts = mContainer.createPrivateKeyParts(getContext());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestDatabase.reset(getContext());
+        super.tearDown();
+    }
+
+    public void testRestoreStream() throws Exception {
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        mContainer.createBackup().encrypt(new ByteArrayInputStream(SECRET.getBytes("UTF-8")), encrypted, true);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mContainer.restoreBackup(mKeyParts, new ByteArrayInputStream(encrypted.toByteArray()), out);
+
+        assertEquals(SECRET, out.toString("UTF-8"));
+    }
+
+    /**
+     * A backup in the older format can start with a valid envelope header by chance. The envelope
+     * cannot be decrypted, so the stream is read again in the older format.
+     */
+    public void testHeaderMatchedByChanceFallsBackToLegacyFormat() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+
+        // starts with a version 1 header, but the key of this container cannot unwrap it
+        byte[] backup = BackupCipher.encrypt(generator.generateKeyPair().getPublic(), SECRET.getBytes("UTF-8"), false);
+        assertTrue(BackupCipher.hasHeader(backup));
+
+        try {
+            mContainer.restoreBackup(mKeyParts, new ByteArrayInputStream(backup), new ByteArrayOutputStream());
+            fail("Restored a backup of another container");
+        } catch (IOException e) {
+            // thrown by the older format, not by reading a closed stream
+            assertEquals("Could not decrypt backup", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.android.secret.sharing;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs operations of {@link DatabaseHelper} on many threads at once. The shared reference of the
+ * helper is closed first, so the database is closed whenever no operation runs and opened again by
+ * the next one. No operation may see a closed database.
+ */
+public class DatabaseHelperConcurrencyTest extends AndroidTestCase {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS = 500;
+    private static final int TIMEOUT_SECONDS = 120;
+
+    private DatabaseHelper mHelper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        mHelper = TestDatabase.reset(getContext());
+        TestDatabase.insertKeyParts(mHelper, 100, true);
+        TestDatabase.insertBackups(mHelper, 10, 16);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestDatabase.reset(getContext());
+        super.tearDown();
+    }
+
+    public void testConcurrentOperations() throws Exception {
+        // only the operations hold references now
+        mHelper.close();
+
+        final List<Throwable> errors = new CopyOnWriteArrayList<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+
+                        for (int j = 0; j < OPERATIONS; j++) {
+                            runOperation(thread, j);
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+
+        assertTrue("Operations did not finish", executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue("Errors: " + errors, errors.isEmpty());
+
+        // all references were released, the next operation opens the database again
+        assertEquals(THREADS * OPERATIONS / 4, mHelper.getMyKeyParts().length);
+    }
+
+    private void runOperation(int thread, int operation) {
+        switch (operation % 4) {
+            case 0:
+                // own key parts, equal foreign key parts would be dropped as duplicates
+                TestDatabase.insertKeyParts(mHelper, 1, false);
+                break;
+            case 1:
+                assertEquals(100, mHelper.getForeignKeyParts().length);
+                break;
+            case 2:
+                // compiled statements of the cache must not outlive the database
+                mHelper.getContainerTimestamp();
+                break;
+            default:
+                SQLiteDatabase db = mHelper.acquire();
+                try {
+                    assertTrue(db.isOpen());
+
+                    ContentValues values = new ContentValues();
+                    values.put(SecretSharingContract.Backup.COLUMN_NAME, "Backup " + thread + "-" + operation);
+                    values.put(SecretSharingContract.Backup.COLUMN_TIMESTAMP, operation);
+                    db.insert(SecretSharingContract.Backup.TABLE_NAME, null, values);
+                } finally {
+                    mHelper.release();
+                }
+                break;
+        }
+    }
+}
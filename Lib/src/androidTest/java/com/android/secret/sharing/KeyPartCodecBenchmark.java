@@ -0,0 +1,74 @@
+package com.android.secret.sharing;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Compares encoding and decoding key parts in the compact format to the JSON format of older
+ * versions. Results are logged with the tag of this class.
+ */
+public class KeyPartCodecBenchmark extends AndroidTestCase {
+    private static final String TAG = "KeyPartCodecBenchmark";
+
+    private static final int KEY_LENGTH = 64;
+    private static final int ITERATIONS = 20000;
+    private static final int RUNS = 5;
+
+    public void testCompareToJson() throws Exception {
+        byte[] key = new byte[KEY_LENGTH];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) (i * 31);
+        }
+
+        KeyPartImpl keyPart = new KeyPartImpl(key, 1476712345678L, "Owner", 3);
+        KeyPartJsonAdapter adapter = new KeyPartJsonAdapter();
+
+        String compact = KeyPartCodec.encode(key, keyPart.getTimestamp(), keyPart.getOwner(), 3);
+        String json = adapter.toJson(keyPart);
+
+        long compactEncode = Long.MAX_VALUE;
+        long compactDecode = Long.MAX_VALUE;
+        long jsonEncode = Long.MAX_VALUE;
+        long jsonDecode = Long.MAX_VALUE;
+
+        // first runs warm up the JIT, the fastest run is reported
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                KeyPartCodec.encode(key, keyPart.getTimestamp(), keyPart.getOwner(), 3);
+            }
+            compactEncode = Math.min(compactEncode, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                KeyPartCodec.decode(compact);
+            }
+            compactDecode = Math.min(compactDecode, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                adapter.toJson(keyPart);
+            }
+            jsonEncode = Math.min(jsonEncode, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                KeyPartCodec.decode(json);
+            }
+            jsonDecode = Math.min(jsonDecode, System.nanoTime() - start);
+        }
+
+        Log.i(TAG, String.format(Locale.US, "compact: %d chars, encode %.2f us, decode %.2f us",
+                compact.length(), perIteration(compactEncode), perIteration(compactDecode)));
+        Log.i(TAG, String.format(Locale.US, "JSON: %d chars, encode %.2f us, decode %.2f us",
+                json.length(), perIteration(jsonEncode), perIteration(jsonDecode)));
+
+        assertTrue(compact.length() < json.length());
+    }
+
+    private static double perIteration(long nanos) {
+        return nanos / 1000.0 / ITERATIONS;
+    }
+}
@@ -0,0 +1,134 @@
+package com.android.secret.sharing;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the NOT EXISTS query of {@link DatabaseHelper#myKeyPartsQuery(String)} to the NOT IN query
+ * it replaced. Timings for growing tables are logged with the tag of this class.
+ */
+public class MyKeyPartsQueryTest extends AndroidTestCase {
+    private static final String TAG = "MyKeyPartsQueryTest";
+
+    private static final String NOT_IN_QUERY = "SELECT * FROM " + SecretSharingContract.KeyPart.TABLE_NAME + " WHERE "
+            + SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN + "=? AND " + SecretSharingContract.KeyPart._ID + " NOT IN (SELECT "
+            + SecretSharingContract.Contact.COLUMN_KEY_PART_ID + " FROM " + SecretSharingContract.Contact.TABLE_NAME + ")";
+    private static final String NOT_EXISTS_QUERY = DatabaseHelper.myKeyPartsQuery("*");
+
+    private static final int[] SIZES = { 1000, 10000, 100000 };
+    private static final int RUNS = 3;
+
+    private DatabaseHelper mHelper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mHelper = TestDatabase.reset(getContext());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestDatabase.reset(getContext());
+        super.tearDown();
+    }
+
+    public void testSameKeyPartsAsNotIn() {
+        insertLinkedKeyParts(1000);
+
+        long[] expected = queryIds(NOT_IN_QUERY);
+        long[] actual = queryIds(NOT_EXISTS_QUERY);
+
+        assertTrue(expected.length > 0);
+        assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+        assertEquals(expected.length, mHelper.getMyKeyParts().length);
+    }
+
+    public void testNoKeyParts() {
+        assertEquals(0, queryIds(NOT_IN_QUERY).length);
+        assertEquals(0, queryIds(NOT_EXISTS_QUERY).length);
+    }
+
+    /**
+     * A contact without a key part stored as NULL made the NOT IN query return nothing, the new query
+     * ignores such contacts.
+     */
+    public void testContactWithoutKeyPart() {
+        long[] ids = TestDatabase.insertKeyParts(mHelper, 10, false);
+        TestDatabase.insertContacts(mHelper, new Long[] { ids[0], null });
+
+        assertEquals(0, queryIds(NOT_IN_QUERY).length);
+        assertEquals(ids.length - 1, queryIds(NOT_EXISTS_QUERY).length);
+    }
+
+    public void testTiming() {
+        for (int size : SIZES) {
+            mHelper = TestDatabase.reset(getContext());
+            insertLinkedKeyParts(size);
+
+            long notInTime = Long.MAX_VALUE;
+            long notExistsTime = Long.MAX_VALUE;
+
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                long[] expected = queryIds(NOT_IN_QUERY);
+                notInTime = Math.min(notInTime, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                long[] actual = queryIds(NOT_EXISTS_QUERY);
+                notExistsTime = Math.min(notExistsTime, System.nanoTime() - start);
+
+                assertEquals(expected.length, actual.length);
+            }
+
+            Log.i(TAG, String.format(Locale.US, "%d key parts: NOT IN %.2f ms, NOT EXISTS %.2f ms",
+                    size, notInTime / 1e6, notExistsTime / 1e6));
+        }
+    }
+
+    /**
+     * Insert own and foreign key parts. Every third own key part is sent to a contact, every tenth
+     * contact has no key part.
+     */
+    private void insertLinkedKeyParts(int count) {
+        long[] ids = TestDatabase.insertKeyParts(mHelper, count, false);
+        TestDatabase.insertKeyParts(mHelper, count / 10, true);
+
+        List<Long> contactKeyParts = new ArrayList<>();
+        for (int i = 0; i < ids.length; i += 3) {
+            contactKeyParts.add(ids[i]);
+        }
+        for (int i = 0; i < count / 10; i++) {
+            contactKeyParts.add(-1L);
+        }
+
+        TestDatabase.insertContacts(mHelper, contactKeyParts.toArray(new Long[contactKeyParts.size()]));
+    }
+
+    private long[] queryIds(String sql) {
+        SQLiteDatabase db = mHelper.acquire();
+        try {
+            Cursor cursor = db.rawQuery(sql + " ORDER BY " + SecretSharingContract.KeyPart._ID, new String[] { "0" });
+            try {
+                long[] ids = new long[cursor.getCount()];
+                int idIndex = cursor.getColumnIndexOrThrow(SecretSharingContract.KeyPart._ID);
+
+                for (int i = 0; cursor.moveToNext(); i++) {
+                    ids[i] = cursor.getLong(idIndex);
+                }
+
+                return ids;
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            mHelper.release();
+        }
+    }
+}
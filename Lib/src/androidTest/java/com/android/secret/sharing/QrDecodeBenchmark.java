@@ -0,0 +1,131 @@
+package com.android.secret.sharing;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.Locale;
+
+/**
+ * Replays generated camera frames through the same detector as {@link QrReader} and measures how
+ * long it takes until a dense QR-Code is decoded with different {@link QrReaderOptions}. The QR-Code
+ * only appears after the first frames, like a code the user still has to aim at. Results are
+ * logged with the tag of this class.
+ */
+public class QrDecodeBenchmark extends AndroidTestCase {
+    private static final String TAG = "QrDecodeBenchmark";
+
+    private static final int FRAME_WIDTH = 640;
+    private static final int FRAME_HEIGHT = 480;
+    private static final int QR_CODE_SIZE = 360;
+    private static final int FRAME_COUNT = 60;
+    private static final int EMPTY_FRAME_COUNT = 10;
+    private static final long FRAME_INTERVAL = 33;
+
+    private String mText;
+    private Frame[] mFrames;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        // dense like a QR-Code of a backup
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1000) {
+            text.append(Long.toString(text.length() * 7919L, 36).toUpperCase(Locale.US));
+        }
+        mText = text.toString();
+
+        BitMatrix matrix = QrCodeRenderer.encode(mText);
+        Bitmap empty = frame(null);
+        Bitmap qrCode = frame(matrix);
+
+        mFrames = new Frame[FRAME_COUNT];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            mFrames[i] = new Frame.Builder()
+                    .setBitmap(i < EMPTY_FRAME_COUNT ? empty : qrCode)
+                    .setId(i)
+                    .setTimestampMillis(i * FRAME_INTERVAL)
+                    .build();
+        }
+    }
+
+    public void testFullFrames() {
+        measure("full frames", new QrReaderOptions());
+    }
+
+    public void testRegionOfInterest() {
+        QrReaderOptions options = new QrReaderOptions();
+        options.setRegionOfInterest(0.8f);
+
+        measure("region of interest 0.8", options);
+    }
+
+    public void testFrameRateLimit() {
+        QrReaderOptions options = new QrReaderOptions();
+        options.setMaximumDecodesPerSecond(10);
+
+        measure("10 decodes per second", options);
+    }
+
+    private void measure(String name, QrReaderOptions options) {
+        BarcodeDetector barcodeDetector = new BarcodeDetector.Builder(getContext())
+                .setBarcodeFormats(Barcode.QR_CODE)
+                .build();
+        Detector<Barcode> detector = new RegionDetector(barcodeDetector, options);
+
+        try {
+            if (!detector.isOperational()) {
+                // play services have not downloaded the detector yet
+                Log.w(TAG, "Barcode detector is not available, skipped " + name);
+                return;
+            }
+
+            int firstDecodedFrame = -1;
+            long timeToFirstDecode = 0;
+            long start = System.nanoTime();
+
+            for (int i = 0; i < mFrames.length; i++) {
+                SparseArray<Barcode> barcodes = detector.detect(mFrames[i]);
+
+                if (barcodes.size() > 0 && firstDecodedFrame < 0) {
+                    firstDecodedFrame = i;
+                    timeToFirstDecode = System.nanoTime() - start;
+                    assertEquals(mText, barcodes.valueAt(0).rawValue);
+                }
+            }
+
+            long total = System.nanoTime() - start;
+            assertTrue("QR-Code was not decoded", firstDecodedFrame >= 0);
+
+            Log.i(TAG, String.format(Locale.US, "%s: first decoded frame %d (%d ms camera time after the QR-Code appeared), time to first decode %.1f ms, avg frame %.2f ms",
+                    name, firstDecodedFrame, (firstDecodedFrame - EMPTY_FRAME_COUNT) * FRAME_INTERVAL,
+                    timeToFirstDecode / 1e6, total / 1e6 / mFrames.length));
+        } finally {
+            detector.release();
+        }
+    }
+
+    /**
+     * @param matrix QR-Code drawn in the centre of the frame or null for an empty frame.
+     */
+    private static Bitmap frame(BitMatrix matrix) {
+        Bitmap bitmap = Bitmap.createBitmap(FRAME_WIDTH, FRAME_HEIGHT, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.WHITE);
+
+        if (matrix != null) {
+            QrCodeRenderer.draw(new Canvas(bitmap), matrix, (FRAME_WIDTH - QR_CODE_SIZE) / 2, (FRAME_HEIGHT - QR_CODE_SIZE) / 2, QR_CODE_SIZE);
+        }
+
+        return bitmap;
+    }
+}
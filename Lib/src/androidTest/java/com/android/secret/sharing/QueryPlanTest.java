@@ -0,0 +1,145 @@
+package com.android.secret.sharing;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks with {@code EXPLAIN QUERY PLAN} that the filtered and sorted queries of {@link DatabaseHelper}
+ * use the indexes of the migrations instead of scanning or sorting whole tables. The queries are
+ * built the same way as in {@link DatabaseHelper}.
+ *
+ * Not covered are lookups in the container table, which has a single row, and
+ * {@link DatabaseHelper#getAvailableBackups()} which reads every backup.
+ */
+public class QueryPlanTest extends AndroidTestCase {
+    private static final String TAG = "QueryPlanTest";
+
+    private static final String PRIMARY_KEY = "INTEGER PRIMARY KEY";
+
+    private DatabaseHelper mHelper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mHelper = TestDatabase.reset(getContext());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestDatabase.reset(getContext());
+        super.tearDown();
+    }
+
+    public void testForeignKeyParts() {
+        String sql = query(SecretSharingContract.KeyPart.TABLE_NAME, null,
+                SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN + "=?",
+                SecretSharingContract.KeyPart.COLUMN_OWNER + " ASC", null);
+
+        assertUsesIndex(sql, "key_part_foreign_owner_index", "1");
+    }
+
+    public void testForeignKeyPartPage() {
+        String selection = SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN + "=? AND (" + SecretSharingContract.KeyPart.COLUMN_OWNER + ">? OR ("
+                + SecretSharingContract.KeyPart.COLUMN_OWNER + "=? AND " + SecretSharingContract.KeyPart._ID + ">?))";
+        String sql = query(SecretSharingContract.KeyPart.TABLE_NAME, KeyPartSummaryImpl.PROJECTION, selection,
+                SecretSharingContract.KeyPart.COLUMN_OWNER + " ASC, " + SecretSharingContract.KeyPart._ID + " ASC", "50");
+
+        assertUsesIndex(sql, "key_part_foreign_owner_index", "1", "Owner", "Owner", "10");
+    }
+
+    public void testMyKeyParts() {
+        String sql = DatabaseHelper.myKeyPartsQuery("*");
+
+        assertUsesIndex(sql, "key_part_foreign_owner_index", "0");
+        assertUsesIndex(sql, "contact_key_part_index", "0");
+    }
+
+    public void testKeyPartById() {
+        String sql = query(SecretSharingContract.KeyPart.TABLE_NAME, null, SecretSharingContract.KeyPart._ID + "=?", null, null);
+
+        assertUsesIndex(sql, PRIMARY_KEY, "1");
+    }
+
+    public void testContactsBySendStatus() {
+        String sql = query(SecretSharingContract.Contact.TABLE_NAME, null, SecretSharingContract.Contact.COLUMN_SEND_STATUS + "=?", null, null);
+
+        assertUsesIndex(sql, "contact_send_status_index", "0");
+    }
+
+    public void testContactsOfContainer() {
+        String sql = query(SecretSharingContract.Contact.TABLE_NAME, null, SecretSharingContract.Contact.COLUMN_Container_ID + "=?",
+                SecretSharingContract.Contact.COLUMN_NAME + " ASC, " + SecretSharingContract.Contact.COLUMN_CONTACT_ID + " ASC", null);
+
+        assertUsesIndex(sql, "contact_container_index", "1");
+    }
+
+    public void testBackupsByTimestamp() {
+        String sql = query(SecretSharingContract.Backup.TABLE_NAME, null, null, SecretSharingContract.Backup.COLUMN_TIMESTAMP + " ASC", null);
+
+        assertUsesIndex(sql, "backup_timestamp_index");
+    }
+
+    public void testAvailableBackupPage() {
+        String selection = SecretSharingContract.Backup.COLUMN_DATA + " IS NOT NULL AND (" + SecretSharingContract.Backup.COLUMN_TIMESTAMP + ">? OR ("
+                + SecretSharingContract.Backup.COLUMN_TIMESTAMP + "=? AND " + SecretSharingContract.Backup._ID + ">?))";
+        String sql = query(SecretSharingContract.Backup.TABLE_NAME, BackupSummaryImpl.PROJECTION, selection,
+                SecretSharingContract.Backup.COLUMN_TIMESTAMP + " ASC, " + SecretSharingContract.Backup._ID + " ASC", "50");
+
+        assertUsesIndex(sql, "backup_timestamp_index", "1000", "1000", "10");
+    }
+
+    private static String query(String table, String[] columns, String selection, String orderBy, String limit) {
+        return SQLiteQueryBuilder.buildQueryString(false, table, columns, selection, null, null, orderBy, limit);
+    }
+
+    /**
+     * Fails if a step of the query plan scans a table without an index or sorts in a temporary
+     * b-tree, or if the index is not used at all.
+     *
+     * @param index Name of the index, or {@link #PRIMARY_KEY} for lookups by id.
+     */
+    private void assertUsesIndex(String sql, String index, String... args) {
+        List<String> plan = explain(sql, args);
+        boolean used = false;
+
+        for (String step : plan) {
+            // SQLite before 3.36 writes "SCAN TABLE x", later versions "SCAN x"
+            assertFalse("Full table scan in " + sql + ": " + plan, step.startsWith("SCAN") && !step.contains("INDEX"));
+            assertFalse("Sorted without index in " + sql + ": " + plan, step.contains("TEMP B-TREE"));
+
+            if (step.contains(index)) {
+                used = true;
+            }
+        }
+
+        assertTrue(index + " not used in " + sql + ": " + plan, used);
+    }
+
+    private List<String> explain(String sql, String[] args) {
+        List<String> plan = new ArrayList<>();
+
+        SQLiteDatabase db = mHelper.acquire();
+        try {
+            Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+            try {
+                int detailIndex = cursor.getColumnIndexOrThrow("detail");
+                while (cursor.moveToNext()) {
+                    plan.add(cursor.getString(detailIndex));
+                }
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            mHelper.release();
+        }
+
+        Log.d(TAG, sql + " -> " + plan);
+        return plan;
+    }
+}
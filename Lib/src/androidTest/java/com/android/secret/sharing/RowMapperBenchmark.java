@@ -0,0 +1,141 @@
+package com.android.secret.sharing;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.test.MoreAsserts;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Compares mapping 10k key part rows with a {@link RowMapper} to looking up every column index per
+ * row, as the entity constructors did before. Results are logged with the tag of this class.
+ */
+public class RowMapperBenchmark extends AndroidTestCase {
+    private static final String TAG = "RowMapperBenchmark";
+
+    private static final int ROW_COUNT = 10000;
+    private static final int RUNS = 5;
+
+    private DatabaseHelper mHelper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        mHelper = TestDatabase.reset(getContext());
+        TestDatabase.insertKeyParts(mHelper, ROW_COUNT, true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestDatabase.reset(getContext());
+        super.tearDown();
+    }
+
+    public void testMapForeignKeyParts() {
+        long lookupTime = Long.MAX_VALUE;
+        long mapperTime = Long.MAX_VALUE;
+
+        // first runs warm up the JIT, the fastest run is reported
+        for (int run = 0; run < RUNS; run++) {
+            lookupTime = Math.min(lookupTime, map(false));
+            mapperTime = Math.min(mapperTime, map(true));
+        }
+
+        Log.i(TAG, String.format(Locale.US, "%d rows: column lookup per row %.2f us/row, row mapper %.2f us/row",
+                ROW_COUNT, lookupTime / 1000.0 / ROW_COUNT, mapperTime / 1000.0 / ROW_COUNT));
+    }
+
+    public void testMapperReadsSameValues() {
+        SQLiteDatabase db = mHelper.acquire();
+        try {
+            Cursor cursor = queryForeignKeyParts(db);
+            try {
+                KeyPartImpl.Mapper mapper = new KeyPartImpl.Mapper(cursor);
+
+                while (cursor.moveToNext()) {
+                    KeyPartImpl mapped = mapper.map(cursor);
+                    Row lookedUp = new Row(cursor);
+
+                    assertEquals(lookedUp.mId, mapped.getId());
+                    assertEquals(lookedUp.mOwner, mapped.getOwner());
+                    assertEquals(lookedUp.mTimestamp, mapped.getTimestamp());
+                    assertEquals(lookedUp.mContainerId, mapped.getContainerId());
+                    assertEquals(lookedUp.mIsForeign, mapped.isForeign());
+                    MoreAsserts.assertEquals(lookedUp.mKey, mapped.getEncoded());
+                }
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            mHelper.release();
+        }
+    }
+
+    /**
+     * @return Time in nanoseconds to map all rows, without the time to run the query.
+     */
+    private long map(boolean useMapper) {
+        SQLiteDatabase db = mHelper.acquire();
+        try {
+            Cursor cursor = queryForeignKeyParts(db);
+            try {
+                // fills the cursor window
+                assertEquals(ROW_COUNT, cursor.getCount());
+
+                long start = System.nanoTime();
+                int count = 0;
+
+                if (useMapper) {
+                    KeyPartImpl.Mapper mapper = new KeyPartImpl.Mapper(cursor);
+                    while (cursor.moveToNext()) {
+                        mapper.map(cursor);
+                        count++;
+                    }
+                } else {
+                    while (cursor.moveToNext()) {
+                        new Row(cursor);
+                        count++;
+                    }
+                }
+
+                long time = System.nanoTime() - start;
+                assertEquals(ROW_COUNT, count);
+
+                return time;
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            mHelper.release();
+        }
+    }
+
+    private static Cursor queryForeignKeyParts(SQLiteDatabase db) {
+        return db.query(SecretSharingContract.KeyPart.TABLE_NAME, null, SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN + "=?",
+                new String[] { "1" }, null, null, SecretSharingContract.KeyPart.COLUMN_OWNER + " ASC");
+    }
+
+    /**
+     * Key part row read like the entity constructors did before row mappers were added.
+     */
+    private static class Row {
+        private final long mId;
+        private final byte[] mKey;
+        private final long mContainerId;
+        private final long mTimestamp;
+        private final String mOwner;
+        private final boolean mIsForeign;
+
+        Row(Cursor cursor) {
+            mId = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.KeyPart._ID));
+            mKey = cursor.getBlob(cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_KEY_PART));
+            mContainerId = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_Container_ID));
+            mTimestamp = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_TIMESTAMP));
+            mOwner = cursor.getString(cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_OWNER));
+            mIsForeign = cursor.getInt(cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN)) == 1;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.android.secret.sharing;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Creates an empty database for a test and fills it with generated rows.
+ */
+final class TestDatabase {
+    private static final int KEY_LENGTH = 64;
+
+    private TestDatabase() {
+    }
+
+    /**
+     * Close the shared helper and delete its database.
+     *
+     * @return Helper of a new, empty database.
+     */
+    static DatabaseHelper reset(Context context) {
+        DatabaseHelper.getHelper(context).close();
+        context.deleteDatabase(DatabaseOpenHelper.DATABASE_NAME);
+
+        return DatabaseHelper.getHelper(context);
+    }
+
+    /**
+     * Insert key parts with distinct content. Owners repeat every 100 key parts.
+     *
+     * @return Ids of the inserted key parts.
+     */
+    static long[] insertKeyParts(DatabaseHelper helper, int count, boolean foreign) {
+        long[] ids = new long[count];
+
+        SQLiteDatabase db = helper.acquire();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[KEY_LENGTH];
+                for (int j = 0; j < key.length; j++) {
+                    key[j] = (byte) (i >> (8 * (j % 4)) ^ j);
+                }
+
+                values.clear();
+                values.put(SecretSharingContract.KeyPart.COLUMN_KEY_PART, key);
+                values.put(SecretSharingContract.KeyPart.COLUMN_TIMESTAMP, 1000 + i);
+                values.put(SecretSharingContract.KeyPart.COLUMN_OWNER, "Owner " + (i % 100));
+                values.put(SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN, foreign);
+                values.put(SecretSharingContract.KeyPart.COLUMN_Container_ID, 1);
+
+                ids[i] = db.insert(SecretSharingContract.KeyPart.TABLE_NAME, null, values);
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            helper.release();
+        }
+
+        return ids;
+    }
+
+    /**
+     * Insert backups with encrypted data of the given length. Every second backup has no data.
+     */
+    static void insertBackups(DatabaseHelper helper, int count, int dataLength) {
+        SQLiteDatabase db = helper.acquire();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+
+            for (int i = 0; i < count; i++) {
+                values.clear();
+                values.put(SecretSharingContract.Backup.COLUMN_NAME, "Backup " + i);
+                values.put(SecretSharingContract.Backup.COLUMN_TIMESTAMP, 1000 + i);
+                values.put(SecretSharingContract.Backup.COLUMN_STORE_METHOD, Backup.BackupStoreMethod.values()[0].name());
+
+                if (i % 2 == 0) {
+                    values.put(SecretSharingContract.Backup.COLUMN_DATA, new byte[dataLength]);
+                } else {
+                    values.putNull(SecretSharingContract.Backup.COLUMN_DATA);
+                }
+
+                db.insert(SecretSharingContract.Backup.TABLE_NAME, null, values);
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            helper.release();
+        }
+    }
+
+    /**
+     * Insert a contact for every key part id. Use -1 or null for contacts without a key part.
+     */
+    static void insertContacts(DatabaseHelper helper, Long[] keyPartIds) {
+        SQLiteDatabase db = helper.acquire();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+
+            for (int i = 0; i < keyPartIds.length; i++) {
+                values.clear();
+                values.put(SecretSharingContract.Contact.COLUMN_NAME, "Contact " + i);
+                values.put(SecretSharingContract.Contact.COLUMN_SEND_STATUS, 0);
+                values.put(SecretSharingContract.Contact.COLUMN_SEND_METHOD, 0);
+                values.put(SecretSharingContract.Contact.COLUMN_Container_ID, 1);
+                values.put(SecretSharingContract.Contact.COLUMN_KEY_PART_ID, keyPartIds[i]);
+
+                db.insert(SecretSharingContract.Contact.TABLE_NAME, null, values);
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            helper.release();
+        }
+    }
+}
@@ -9,7 +9,6 @@ import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Typeface;
 import android.net.Uri;
@@ -17,6 +16,7 @@ import android.os.Build;
 import android.os.Environment;
 import android.print.PrintManager;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
 import android.view.SurfaceView;
@@ -24,12 +24,15 @@ import android.widget.ImageView;
 
 import com.android.share.sharing.R;
 
-import net.glxn.qrgen.android.QRCode;
-
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import github.nisrulz.qreader.QRDataListener;
 
@@ -49,6 +52,7 @@ public class AndroidSecretSharing {
 
     private Context mContext;
     private QrReader mQrReader;
+    private boolean mPrintVectorQrCodes = true;
 
     public AndroidSecretSharing(Context context) {
         mContext = context;
@@ -70,6 +74,81 @@ public class AndroidSecretSharing {
         return DatabaseHelper.getHelper(mContext).getForeignKeyParts();
     }
 
+    /**
+     * Get saved key parts of other persons without loading their secret key parts. Use
+     * {@link KeyPartSummary#load(Context)} to load a key part when it is needed.
+     */
+    public KeyPartSummary[] getForeignKeyPartSummaries() {
+        return DatabaseHelper.getHelper(mContext).getForeignKeyPartSummaries();
+    }
+
+    /**
+     * Get saved key parts of the user without loading their secret key parts. Use
+     * {@link KeyPartSummary#load(Context)} to load a key part when it is needed.
+     */
+    public KeyPartSummary[] getUserKeyPartSummaries() {
+        return DatabaseHelper.getHelper(mContext).getMyKeyPartSummaries();
+    }
+
+    /**
+     * Get created backups without loading their encrypted data. Use
+     * {@link BackupSummary#load(Context)} to load a backup when it is needed.
+     */
+    public BackupSummary[] getSavedBackupSummaries() {
+        return DatabaseHelper.getHelper(mContext).getBackupSummaries();
+    }
+
+    /**
+     * Get backups with stored encrypted secret without loading the encrypted data. Use
+     * {@link BackupSummary#load(Context)} to load a backup when it is needed.
+     */
+    public BackupSummary[] getAvailableBackupSummaries() {
+        return DatabaseHelper.getHelper(mContext).getAvailableBackupSummaries();
+    }
+
+    /**
+     * Get a page of saved key parts of other persons sorted by owner. Secret key parts are only
+     * loaded on {@link KeyPartSummary#load(Context)}.
+     *
+     * @param after     Last key part of the previous page. Null to get the first page.
+     * @param pageSize  Maximum count of key parts in the page. A smaller page is the last one.
+     */
+    public KeyPartSummary[] getForeignKeyParts(@Nullable KeyPartSummary after, int pageSize) {
+        return DatabaseHelper.getHelper(mContext).getForeignKeyParts(after, pageSize);
+    }
+
+    /**
+     * Get a page of created backups sorted by creation time. Encrypted data is only loaded on
+     * {@link BackupSummary#load(Context)}.
+     *
+     * @param after     Last backup of the previous page. Null to get the first page.
+     * @param pageSize  Maximum count of backups in the page. A smaller page is the last one.
+     */
+    public BackupSummary[] getSavedBackups(@Nullable BackupSummary after, int pageSize) {
+        return DatabaseHelper.getHelper(mContext).getBackups(after, pageSize);
+    }
+
+    /**
+     * Get a page of backups with stored encrypted secret sorted by creation time. Encrypted data is
+     * only loaded on {@link BackupSummary#load(Context)}.
+     *
+     * @param after     Last backup of the previous page. Null to get the first page.
+     * @param pageSize  Maximum count of backups in the page. A smaller page is the last one.
+     */
+    public BackupSummary[] getAvailableBackups(@Nullable BackupSummary after, int pageSize) {
+        return DatabaseHelper.getHelper(mContext).getAvailableBackups(after, pageSize);
+    }
+
+    /**
+     * Save many key parts of other persons at once, e.g. when importing them from another device.
+     *
+     * @param keyParts Key parts of other persons.
+     * @return The saved key parts.
+     */
+    public KeyPart[] importForeignKeyParts(KeyPart[] keyParts) {
+        return DatabaseHelper.getHelper(mContext).saveForeignKeyParts(keyParts);
+    }
+
     /**
      * Get saved key parts that belong to the user.
      */
@@ -108,6 +187,151 @@ public class AndroidSecretSharing {
         return DatabaseHelper.getHelper(mContext).getContainer();
     }
 
+    /**
+     * Load created backups in the background.
+     *
+     * @param listener Receives the backups on the main thread. Can be null.
+     */
+    public Future<Backup[]> loadSavedBackups(ResultListener<Backup[]> listener) {
+        return DatabaseExecutor.getInstance().read(new Callable<Backup[]>() {
+            @Override
+            public Backup[] call() {
+                return DatabaseHelper.getHelper(mContext).getBackups();
+            }
+        }, listener);
+    }
+
+    /**
+     * Load saved key parts of other persons in the background.
+     *
+     * @param listener Receives the key parts on the main thread. Can be null.
+     */
+    public Future<KeyPart[]> loadForeignKeyParts(ResultListener<KeyPart[]> listener) {
+        return DatabaseExecutor.getInstance().read(new Callable<KeyPart[]>() {
+            @Override
+            public KeyPart[] call() {
+                return DatabaseHelper.getHelper(mContext).getForeignKeyParts();
+            }
+        }, listener);
+    }
+
+    /**
+     * Load saved key parts that belong to the user in the background.
+     *
+     * @param listener Receives the key parts on the main thread. Can be null.
+     */
+    public Future<KeyPart[]> loadUserKeyParts(ResultListener<KeyPart[]> listener) {
+        return DatabaseExecutor.getInstance().read(new Callable<KeyPart[]>() {
+            @Override
+            public KeyPart[] call() {
+                return DatabaseHelper.getHelper(mContext).getMyKeyParts();
+            }
+        }, listener);
+    }
+
+    /**
+     * Load contacts that are selected for receiving a key part in the background.
+     *
+     * @param listener Receives the contacts on the main thread. Can be null.
+     * @see #getContactsWithStatusSelected()
+     */
+    public Future<Contact[]> loadContactsWithStatusSelected(ResultListener<Contact[]> listener) {
+        return DatabaseExecutor.getInstance().read(new Callable<Contact[]>() {
+            @Override
+            public Contact[] call() {
+                return DatabaseHelper.getHelper(mContext).getContactsWithStatusSelected();
+            }
+        }, listener);
+    }
+
+    /**
+     * Load backups with stored encrypted secret in the background.
+     *
+     * @param listener Receives the backups on the main thread. Can be null.
+     */
+    public Future<Backup[]> loadAvailableBackups(ResultListener<Backup[]> listener) {
+        return DatabaseExecutor.getInstance().read(new Callable<Backup[]>() {
+            @Override
+            public Backup[] call() {
+                return DatabaseHelper.getHelper(mContext).getAvailableBackups();
+            }
+        }, listener);
+    }
+
+    /**
+     * Load the container in the background.
+     *
+     * @param listener Receives the container on the main thread. Can be null.
+     */
+    public Future<Container> loadContainer(ResultListener<Container> listener) {
+        return DatabaseExecutor.getInstance().read(new Callable<Container>() {
+            @Override
+            public Container call() {
+                return DatabaseHelper.getHelper(mContext).getContainer();
+            }
+        }, listener);
+    }
+
+    /**
+     * Save a key part in the background.
+     *
+     * @param listener Receives the saved key part on the main thread. Can be null.
+     */
+    public Future<KeyPart> save(final KeyPart keyPart, ResultListener<KeyPart> listener) {
+        return DatabaseExecutor.getInstance().write(new Callable<KeyPart>() {
+            @Override
+            public KeyPart call() {
+                keyPart.save(mContext);
+                return keyPart;
+            }
+        }, listener);
+    }
+
+    /**
+     * Save a backup in the background.
+     *
+     * @param listener Receives the saved backup on the main thread. Can be null.
+     */
+    public Future<Backup> save(final Backup backup, ResultListener<Backup> listener) {
+        return DatabaseExecutor.getInstance().write(new Callable<Backup>() {
+            @Override
+            public Backup call() {
+                backup.save(mContext);
+                return backup;
+            }
+        }, listener);
+    }
+
+    /**
+     * Save a contact in the background.
+     *
+     * @param listener Receives the saved contact on the main thread. Can be null.
+     */
+    public Future<Contact> save(final Contact contact, ResultListener<Contact> listener) {
+        return DatabaseExecutor.getInstance().write(new Callable<Contact>() {
+            @Override
+            public Contact call() {
+                contact.save(mContext);
+                return contact;
+            }
+        }, listener);
+    }
+
+    /**
+     * Save the container and split its private key into key parts in the background.
+     *
+     * @param listener Receives the key parts on the main thread. Can be null.
+     * @see Container#createPrivateKeyParts(Context)
+     */
+    public Future<KeyPart[]> createPrivateKeyParts(final Container container, ResultListener<KeyPart[]> listener) {
+        return DatabaseExecutor.getInstance().write(new Callable<KeyPart[]>() {
+            @Override
+            public KeyPart[] call() {
+                return container.createPrivateKeyParts(mContext);
+            }
+        }, listener);
+    }
+
     /**
      * @return True if the private key is already shared.
      */
@@ -162,7 +386,8 @@ public class AndroidSecretSharing {
      * Read a key part that is shown as a QR-Code.
      *
      * @param surfaceView       View that will show the camera to the user.
-     * @param listener          Listener to receive the scanned key part.
+     * @param listener          Listener to receive the scanned key part. Implement {@link QrKeyPartSaveListener}
+     *                          to be notified if the key part could not be saved.
      * @param readForeignKey    True of a key part of another person should be read.
      */
     public QrReader readSecretPart(Activity activity, SurfaceView surfaceView, QrKeyPartListener listener, boolean readForeignKey) {
@@ -181,6 +406,48 @@ public class AndroidSecretSharing {
         return mQrReader;
     }
 
+    /**
+     * Read key parts from images or PDF files, e.g. received Email attachments or printed key parts.
+     * Start decoding with {@link QrImageDecoder#decode(Uri[], ResultListener)}.
+     *
+     * @param listener          Listener to receive the found key parts. Implement {@link QrKeyPartSaveListener}
+     *                          to be notified if a key part could not be saved.
+     * @param readForeignKey    True if key parts of other persons should be read.
+     */
+    public QrImageDecoder decodeSecretParts(QrKeyPartListener listener, boolean readForeignKey) {
+        return new QrImageDecoder(mContext, listener, readForeignKey);
+    }
+
+    /**
+     * Read secrets from images or PDF files, e.g. a backup that was sent via Email. Backups that
+     * were split into multiple QR-Codes are joined. Start decoding with
+     * {@link QrImageDecoder#decode(Uri[], ResultListener)}.
+     *
+     * @param listener Listener to receive the found data. Implement {@link QrChunkListener} to
+     *                 receive the progress of split backups.
+     */
+    public QrImageDecoder decodeQrCodes(QRDataListener listener) {
+        return new QrImageDecoder(mContext, listener);
+    }
+
+    /**
+     * Scan key parts with the camera until enough key parts were scanned to restore a backup. The
+     * camera keeps running between key parts and the backup is restored automatically.
+     *
+     * @param surfaceView       View that will show the camera to the user.
+     * @param container         Container that created the backup.
+     * @param encryptedBackup   Backup to restore.
+     * @param listener          Receives the progress and the restored secret.
+     * @return Started session.
+     */
+    public ScanSession startScanSession(Activity activity, SurfaceView surfaceView, Container container, String encryptedBackup, ScanSessionListener listener) {
+        ScanSession session = new ScanSession(activity, surfaceView, container, encryptedBackup, listener);
+        mQrReader = session.getQrReader();
+
+        session.start();
+        return session;
+    }
+
     /**
      * Call this method from {@link Activity#onRequestPermissionsResult(int, String[], int[])} to grant the camera
      * permission for the QR-Reader.
@@ -209,10 +476,13 @@ public class AndroidSecretSharing {
     }
 
     /**
-     * Call this when this library is not longer used. It will close its database.
+     * Call this when this library is not longer used. It will close its database and wipe cached
+     * QR-Codes.
      */
     public void close() {
         DatabaseHelper.getHelper(mContext).close();
+        QrCodeCache.closeIfCreated();
+        BitmapPool.getPool().clear();
     }
 
     /**
@@ -238,10 +508,63 @@ public class AndroidSecretSharing {
         int width = view.getWidth();
         int height = view.getHeight();
 
-        Bitmap qrCode = getQrCode(qrText, width, height);
+        Bitmap qrCode = QrCodeCache.getCache(mContext).getQrCode(qrText, width, height);
         view.setImageBitmap(qrCode);
     }
 
+    /**
+     * Show a QR-Code of a key part without blocking the calling thread. The key part is encoded and
+     * rendered in the background. A pending request for the same view is cancelled, so views can be
+     * reused in lists.
+     *
+     * @param key       Key part to show as a QR-Code.
+     * @param view      View to show the QR-Code on.
+     * @param listener  Is notified on the main thread when the QR-Code is shown, too large or failed. Can be null.
+     */
+    public void showQrCodeAsync(@NonNull KeyPart key, @NonNull ImageView view, @Nullable QrCodeShowListener listener) {
+        final KeyPartImpl keyPart = (KeyPartImpl) key;
+
+        QrRenderTask.start(mContext, view, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return keyPart.encode(mContext);
+            }
+        }, listener);
+    }
+
+    /**
+     * Show a text as a QR-Code without blocking the calling thread. A pending request for the same
+     * view is cancelled, so views can be reused in lists.
+     *
+     * @param qrText    Text to show as a QR-Code.
+     * @param view      View to show the QR-Code on.
+     * @param listener  Is notified on the main thread when the QR-Code is shown, too large or failed. Can be null.
+     */
+    public void showQrCodeAsync(@NonNull final String qrText, @NonNull ImageView view, @Nullable QrCodeShowListener listener) {
+        QrRenderTask.start(mContext, view, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return qrText;
+            }
+        }, listener);
+    }
+
+    /**
+     * Cancel a pending QR-Code request of a view, e.g. when the view is recycled.
+     */
+    public void cancelQrCode(@NonNull ImageView view) {
+        QrRenderTask.cancel(view);
+    }
+
+    /**
+     * Choose how QR-Codes are printed. Vector QR-Codes are drawn as paths into the PDF, which keeps the
+     * document small and sharp on every printer. Raster QR-Codes are embedded as images, which
+     * may help printers that render complex vector graphics slowly. Vector QR-Codes are the default.
+     */
+    public void setPrintVectorQrCodes(boolean vector) {
+        mPrintVectorQrCodes = vector;
+    }
+
     /**
      * Print a key part of a contact. The API level must be at least 19 to print.
      *
@@ -251,43 +574,100 @@ public class AndroidSecretSharing {
      */
     @TargetApi(Build.VERSION_CODES.KITKAT)
     public void printQrCode(Context context, Contact contact) throws QrCodeSizeException {
-        String qrText = ((KeyPartImpl) contact.getKeyPart(mContext)).encode(mContext);
-        print(context, qrText, contact.getName(), false);
+        String documentName = String.format(context.getString(R.string.email_subject), contact.getName());
+        print(context, documentName, new QrCodePrintAdapter.Page[] { keyPartPage(contact) });
     }
 
     /**
-     * Print an encrypted secret. The API level must be at least 19 to print.
+     * Print the key parts of multiple contacts in one print job with one page per contact. Contacts
+     * without a key part are skipped. The API level must be at least 19 to print.
      *
-     * @param dataBackup                Encrypted secret to print.
-     * @throws QrCodeSizeException      If the key part is too large to display it as a QR-Code.
+     * @param contacts                  Contacts whose linked key parts should be printed, e.g.
+     *                                  {@link #getContactsWithStatusSelected()}.
+     * @return                          True if the print job was started, false if no contact has a key part.
+     * @throws QrCodeSizeException      If a key part is too large to display it as a QR-Code.
      * @throws IllegalStateException    If API Level < 19.
      */
     @TargetApi(Build.VERSION_CODES.KITKAT)
-    public void printQrCode(Context context, Backup dataBackup) throws QrCodeSizeException {
-        print(context, dataBackup.getEncryptedData(), dataBackup.getName(), true);
+    public boolean printQrCodes(Context context, Contact[] contacts) throws QrCodeSizeException {
+        ArrayList<QrCodePrintAdapter.Page> pages = new ArrayList<>(contacts.length);
+
+        for (Contact contact : contacts) {
+            if (contact.hasKeyPart()) {
+                pages.add(keyPartPage(contact));
+            }
+        }
+
+        String documentName = context.getString(R.string.printed_document_key_parts);
+        return print(context, documentName, pages.toArray(new QrCodePrintAdapter.Page[pages.size()]));
     }
 
+    /**
+     * Print an encrypted secret. The API level must be at least 19 to print. Large secrets are split
+     * into multiple QR-Codes which are printed on separate pages.
+     *
+     * @param dataBackup                Encrypted secret to print.
+     * @throws IllegalStateException    If API Level < 19.
+     */
     @TargetApi(Build.VERSION_CODES.KITKAT)
-    private void print(Context context, String qrText, String name, boolean isBackup) throws QrCodeSizeException {
-        if (Build.VERSION.SDK_INT < 19) {
-            throw new IllegalStateException("Print service is not available for devices with API level lower than 19");
-        }
+    public void printQrCode(Context context, Backup dataBackup) {
+        String documentName = String.format(context.getString(R.string.email_subject_backup), dataBackup.getName());
+        print(context, documentName, backupPages(dataBackup));
+    }
 
-        PrintManager printManager = (PrintManager) context.getSystemService(Context.PRINT_SERVICE);
+    /**
+     * Print multiple encrypted secrets in one print job. Every QR-Code is printed on its own page. The
+     * API level must be at least 19 to print.
+     *
+     * @param backups                   Encrypted secrets to print.
+     * @return                          True if the print job was started, false if no backup was passed.
+     * @throws IllegalStateException    If API Level < 19.
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public boolean printQrCodes(Context context, Backup[] backups) {
+        ArrayList<QrCodePrintAdapter.Page> pages = new ArrayList<>(backups.length);
 
-        // Set job name, which will be displayed in the print queue
-        String jobName = context.getString(R.string.app_name) + " Document";
-        Bitmap qrCode = getQrCode(qrText, 400, 400);
+        for (Backup backup : backups) {
+            Collections.addAll(pages, backupPages(backup));
+        }
 
-        printManager.print(jobName, new QrCodePrintAdapter(context, name, qrCode, isBackup), null);
+        String documentName = context.getString(R.string.printed_document_backups);
+        return print(context, documentName, pages.toArray(new QrCodePrintAdapter.Page[pages.size()]));
     }
 
-    private Bitmap getQrCode(String qrText, int width, int height) throws QrCodeSizeException {
+    private QrCodePrintAdapter.Page keyPartPage(Contact contact) throws QrCodeSizeException {
+        String qrText = ((KeyPartImpl) contact.getKeyPart(mContext)).encode(mContext);
+
+        // QR-Codes are encoded when pages are drawn, so check the size now
         if (qrText.length() > MAXIMUM_QR_CODE_SIZE) {
             throw new QrCodeSizeException(qrText.length());
         }
 
-        return QRCode.from(qrText).withSize(width, height).bitmap();
+        return QrCodePrintAdapter.Page.keyPart(contact.getName(), qrText);
+    }
+
+    private QrCodePrintAdapter.Page[] backupPages(Backup backup) {
+        String[] qrTexts = QrChunks.split(backup.getEncryptedData(), MAXIMUM_QR_CODE_SIZE);
+        return QrCodePrintAdapter.Page.backup(backup.getName(), qrTexts);
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private boolean print(Context context, String documentName, QrCodePrintAdapter.Page[] pages) {
+        if (Build.VERSION.SDK_INT < 19) {
+            throw new IllegalStateException("Print service is not available for devices with API level lower than 19");
+        }
+
+        if (pages.length == 0) {
+            // an empty document cannot be printed
+            return false;
+        }
+
+        PrintManager printManager = (PrintManager) context.getSystemService(Context.PRINT_SERVICE);
+
+        // Set job name, which will be displayed in the print queue
+        String jobName = context.getString(R.string.app_name) + " Document";
+        printManager.print(jobName, new QrCodePrintAdapter(context, documentName, pages, mPrintVectorQrCodes), null);
+        return true;
     }
 
     /**
@@ -301,66 +681,141 @@ public class AndroidSecretSharing {
         }
 
         String secret = ((KeyPartImpl) contact.getKeyPart(mContext)).encode(mContext);
-        return sendEmail(activity, contact.getName(), secret, contact.getEmail(), false);
+        return sendEmail(activity, contact.getName(), new String[] { secret }, contact.getEmail(), false);
     }
 
     /**
-     * Send backup via Email.
+     * Send backup via Email. Large backups are split into multiple QR-Codes which are attached as
+     * separate images.
      *
      * @return True if Email app is installed and every contact has an Email address and a secret part.
      */
     public boolean sendEmail(Activity activity, Backup backup) throws QrCodeSizeException {
-        return sendEmail(activity, backup.getName(), backup.getEncryptedData(), null, true);
+        String[] secrets = QrChunks.split(backup.getEncryptedData(), MAXIMUM_QR_CODE_SIZE);
+        return sendEmail(activity, backup.getName(), secrets, null, true);
     }
 
     public void saveToCloud(Backup backup) {
         Cloud.save(mContext, backup);
     }
 
+    /**
+     * Encrypt a large secret directly into the cloud storage.
+     *
+     * @param data     Secret to encrypt. The stream is closed afterwards.
+     * @param compress Compress the secret before encryption.
+     */
+    public void saveToCloud(Backup backup, InputStream data, boolean compress) {
+        Cloud.save(mContext, backup, data, compress);
+    }
+
+    /**
+     * Read an encrypted backup from cloud storage. It can be restored with
+     * {@link Container#restoreBackup(KeyPart[], String)}. Use {@link #openFromCloud(Backup)} for
+     * large backups.
+     *
+     * @return Encrypted backup or null if the backup does not exist.
+     */
     public String getFromCloud(Backup backup) {
         return Cloud.getBackup(backup);
     }
 
-    private boolean sendEmail(Activity activity, String name, String secret, String emailAddress, boolean isBackup) throws QrCodeSizeException {
+    /**
+     * Open an encrypted backup in cloud storage. The stream can be restored with
+     * {@link Container#restoreBackup(KeyPart[], InputStream, OutputStream)}.
+     *
+     * @return Stream of the encrypted backup or null if the backup does not exist.
+     */
+    public InputStream openFromCloud(Backup backup) {
+        return Cloud.openBackup(backup);
+    }
+
+    private boolean sendEmail(Activity activity, String name, String[] secrets, String emailAddress, boolean isBackup) throws QrCodeSizeException {
         int storagePermission = ContextCompat.checkSelfPermission(mContext, Manifest.permission.WRITE_EXTERNAL_STORAGE);
         if (storagePermission != PackageManager.PERMISSION_GRANTED) {
             ActivityCompat.requestPermissions(activity, new String[] {Manifest.permission.WRITE_EXTERNAL_STORAGE}, REQUEST_CODE_PERMISSION_WRITE_EXTERNAL_STORAGE);
             return false;
         }
 
-        FileOutputStream fos = null;
-        Bitmap bmpBase = Bitmap.createBitmap(PRINT_IMAGE_WIDTH, PRINT_IMAGE_HEIGHT, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bmpBase);
-        canvas.drawColor(Color.WHITE);
-
-        Bitmap qrCode = getQrCode(secret, 400, 400);
-
         String subject;
         String emailBody;
 
         if (isBackup) {
-            QrCodePrintAdapter.drawBackup(mContext, canvas, qrCode, name);
-
             subject = String.format(mContext.getString(R.string.email_subject_backup), name);
             emailBody = mContext.getString(R.string.email_text_backup);
         } else {
             String userName = DatabaseHelper.getHelper(mContext).getUserName();
-            QrCodePrintAdapter.drawKeyPart(mContext, canvas, qrCode, name);
 
             subject = String.format(mContext.getString(R.string.email_subject), userName);
             emailBody = String.format(mContext.getString(R.string.email_text), name, userName);
         }
 
         File path = new File(EMAIL_ATTACHMENT_FOLDER);
-        String fileName = name + ".jpg";
 
         if (!path.isDirectory()) {
             path.mkdir();
         }
 
+        ArrayList<Uri> attachmentUris = new ArrayList<>();
+        for (int i = 0; i < secrets.length; i++) {
+            String fileName = secrets.length > 1 ? name + " " + (i + 1) + ".jpg" : name + ".jpg";
+            File attachment = new File(path, fileName);
+
+            saveEmailAttachment(attachment, secrets[i], name, i + 1, secrets.length, isBackup);
+            attachmentUris.add(Uri.fromFile(attachment));
+        }
+
+        Intent emailIntent;
+        if (attachmentUris.size() == 1) {
+            emailIntent = new Intent(Intent.ACTION_SENDTO);
+            emailIntent.setData(Uri.parse("mailto:"));
+            emailIntent.putExtra(Intent.EXTRA_STREAM, attachmentUris.get(0));
+        } else {
+            // mailto intents support only a single attachment
+            emailIntent = new Intent(Intent.ACTION_SEND_MULTIPLE);
+            emailIntent.setType("image/jpeg");
+            emailIntent.putParcelableArrayListExtra(Intent.EXTRA_STREAM, attachmentUris);
+        }
+
+        if (emailAddress != null) {
+            emailIntent.putExtra(Intent.EXTRA_EMAIL, new String[] {emailAddress});
+        }
+
+        emailIntent.putExtra(Intent.EXTRA_SUBJECT, subject);
+        emailIntent.putExtra(Intent.EXTRA_TEXT, emailBody);
+
+        boolean emailAppInstalled = emailIntent.resolveActivity(mContext.getPackageManager()) != null;
+
+        if (emailAppInstalled) {
+            mContext.startActivity(emailIntent);
+        }
+
+        return emailAppInstalled;
+    }
+
+    /**
+     * Draw a QR-Code on a page and save it as an image.
+     *
+     * @param part      Number of the QR-Code if a backup was split into multiple QR-Codes, starting at 1.
+     * @param partCount Count of QR-Codes of the backup.
+     */
+    private void saveEmailAttachment(File attachment, String secret, String name, int part, int partCount, boolean isBackup) throws QrCodeSizeException {
+        FileOutputStream fos = null;
+        QrCodeImage qrCode = QrCodeRenderer.modules(QrCodeRenderer.encode(secret));
+
+        // JPEG has no alpha channel, so the page does not need ARGB_8888
+        Bitmap bmpBase = BitmapPool.getPool().acquire(PRINT_IMAGE_WIDTH, PRINT_IMAGE_HEIGHT, Bitmap.Config.RGB_565);
+        Canvas canvas = new Canvas(bmpBase);
+
+        if (isBackup) {
+            QrCodePrintAdapter.drawBackup(mContext, canvas, qrCode, name, part, partCount);
+        } else {
+            QrCodePrintAdapter.drawKeyPart(mContext, canvas, qrCode, name);
+        }
+
         // Save Bitmap to File
         try {
-            fos = new FileOutputStream(path + "/" + fileName);
+            fos = new FileOutputStream(attachment);
             bmpBase.compress(Bitmap.CompressFormat.JPEG, 100, fos);
 
             fos.flush();
@@ -377,29 +832,7 @@ public class AndroidSecretSharing {
                 }
             }
 
-            bmpBase.recycle();
+            BitmapPool.getPool().release(bmpBase);
         }
-
-        File attachment = new File(path + "/" + fileName);
-        Uri attachmentUri = Uri.fromFile(attachment);
-
-        Intent emailIntent = new Intent(Intent.ACTION_SENDTO);
-        emailIntent.setData(Uri.parse("mailto:"));
-
-        if (emailAddress != null) {
-            emailIntent.putExtra(Intent.EXTRA_EMAIL, new String[] {emailAddress});
-        }
-
-        emailIntent.putExtra(Intent.EXTRA_SUBJECT, subject);
-        emailIntent.putExtra(Intent.EXTRA_TEXT, emailBody);
-        emailIntent.putExtra(Intent.EXTRA_STREAM, attachmentUri);
-
-        boolean emailAppInstalled = emailIntent.resolveActivity(mContext.getPackageManager()) != null;
-
-        if (emailAppInstalled) {
-            mContext.startActivity(emailIntent);
-        }
-
-        return emailAppInstalled;
     }
 }
@@ -0,0 +1,30 @@
+package com.android.secret.sharing;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named threads with background priority, so work of this library does not slow down the UI.
+ */
+class BackgroundThreadFactory implements ThreadFactory {
+    private final String mName;
+    private final AtomicInteger mCount = new AtomicInteger();
+
+    BackgroundThreadFactory(String name) {
+        mName = name;
+    }
+
+    @Override
+    public Thread newThread(@NonNull final Runnable runnable) {
+        return new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }
+        }, mName + " " + mCount.incrementAndGet());
+    }
+}
@@ -3,6 +3,10 @@ package com.android.secret.sharing;
 import android.content.Context;
 import android.os.Parcelable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 /**
  *  Encrypts and decrypts a secret. Backups can be stored in a database of this library.
  */
@@ -15,6 +19,27 @@ public interface Backup extends com.secure.key.backup.Backup, SecretPresentation
         EMAIL, PRINT, CLOUD
     }
 
+    /**
+     * Encrypt a secret with the public key of this backup. Text like JSON or PEM keys gets much
+     * smaller when it is compressed, which results in smaller QR codes, email attachments and cloud
+     * files. Restoring detects whether the secret was compressed.
+     *
+     * @param data     Secret to encrypt.
+     * @param compress Compress the secret before encryption.
+     */
+    void encrypt(String data, boolean compress);
+
+    /**
+     * Encrypt a secret read from a stream and write the encrypted backup to another stream. The
+     * secret is encrypted in chunks so large files never need to be held in memory. Both streams
+     * are closed when this method returns.
+     *
+     * @param data     Secret to encrypt.
+     * @param out      Target of the encrypted backup, e.g. a file.
+     * @param compress Compress the secret before encryption.
+     */
+    void encrypt(InputStream data, OutputStream out, boolean compress) throws IOException;
+
     /**
      * Specify how this backup will be stored.
      *
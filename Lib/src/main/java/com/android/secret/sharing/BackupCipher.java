@@ -0,0 +1,576 @@
+package com.android.secret.sharing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Hybrid encryption of backups with the RSA key of a container. The secret can be compressed
+ * before it is encrypted since encrypted data cannot be compressed anymore.
+ *
+ * Both versions start with the magic bytes {@code SKBAK\0}, version, flags, length of the wrapped key
+ * (2 bytes) and the wrapped key. The wrapped key contains the AES key followed by the HMAC key. Older
+ * backups have no header, so the header is checked completely before data is treated as encrypted by
+ * this class.
+ *
+ * Version 1 is followed by the IV, the AES-CBC encrypted secret and an HMAC-SHA256 over all previous
+ * bytes. It is used for small backups that are kept in memory.
+ *
+ * Version 2 is followed by a sequence of chunks so large backups can be streamed. Each chunk has a
+ * length (4 bytes, the highest bit marks the last chunk), the IV, the AES-CBC encrypted data and an
+ * HMAC-SHA256 over a hash of the header, the chunk index, the length, the IV and the encrypted data.
+ * Reordered, removed or truncated chunks are detected.
+ */
+final class BackupCipher {
+    // the zero byte never occurs in base64 text, so older backups stored as text cannot match
+    private static final byte[] MAGIC = new byte[] { 'S', 'K', 'B', 'A', 'K', 0 };
+    private static final int VERSION_OFFSET = MAGIC.length;
+    private static final int FLAGS_OFFSET = MAGIC.length + 1;
+    private static final int WRAPPED_KEYS_LENGTH_OFFSET = MAGIC.length + 2;
+
+    /**
+     * Length of the header before the wrapped key. Read this many bytes to check for an encrypted backup
+     * with {@link #hasHeader(byte[])}.
+     */
+    static final int HEADER_LENGTH = MAGIC.length + 4;
+
+    private static final int VERSION = 1;
+    private static final int VERSION_STREAM = 2;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int LAST_CHUNK = 0x80000000;
+
+    static final int FLAG_COMPRESSED = 0x01;
+
+    private static final String KEY_WRAP_TRANSFORMATION = "RSA/ECB/OAEPWithSHA-1AndMGF1Padding";
+    private static final String DATA_TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final int KEY_LENGTH = 32;
+    private static final int IV_LENGTH = 16;
+    private static final int MAC_LENGTH = 32;
+
+    // wrapped keys have the size of the RSA modulus, 1024 to 8192 bits
+    private static final int MINIMUM_WRAPPED_KEYS_LENGTH = 128;
+    private static final int MAXIMUM_WRAPPED_KEYS_LENGTH = 1024;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private BackupCipher() {
+    }
+
+    /**
+     * @return True if the data was encrypted by this class. Magic bytes, version, flags and key length
+     * must be valid and the data must not be shorter than a backup with an empty secret.
+     */
+    static boolean isEncrypted(byte[] data) {
+        if (data == null || !hasHeader(data)) {
+            return false;
+        }
+
+        int minimumLength = HEADER_LENGTH + wrappedKeysLength(data);
+        if (data[VERSION_OFFSET] == VERSION) {
+            minimumLength += IV_LENGTH + MAC_LENGTH;
+        }
+
+        return data.length >= minimumLength;
+    }
+
+    /**
+     * @param start At least the first {@link #HEADER_LENGTH} bytes of the data.
+     * @return True if the data starts with a valid header of an encrypted backup.
+     */
+    static boolean hasHeader(byte[] start) {
+        if (start.length < HEADER_LENGTH) {
+            return false;
+        }
+
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (start[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+
+        int version = start[VERSION_OFFSET];
+        int wrappedKeysLength = wrappedKeysLength(start);
+
+        return (version == VERSION || version == VERSION_STREAM)
+                && (start[FLAGS_OFFSET] & ~FLAG_COMPRESSED) == 0
+                && wrappedKeysLength >= MINIMUM_WRAPPED_KEYS_LENGTH
+                && wrappedKeysLength <= MAXIMUM_WRAPPED_KEYS_LENGTH;
+    }
+
+    private static int wrappedKeysLength(byte[] header) {
+        return ((header[WRAPPED_KEYS_LENGTH_OFFSET] & 0xFF) << 8) | (header[WRAPPED_KEYS_LENGTH_OFFSET + 1] & 0xFF);
+    }
+
+    /**
+     * Write magic bytes, version, flags and key length.
+     */
+    private static void writeHeader(byte[] header, int version, int flags, int wrappedKeysLength) {
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        header[VERSION_OFFSET] = (byte) version;
+        header[FLAGS_OFFSET] = (byte) flags;
+        header[WRAPPED_KEYS_LENGTH_OFFSET] = (byte) (wrappedKeysLength >> 8);
+        header[WRAPPED_KEYS_LENGTH_OFFSET + 1] = (byte) wrappedKeysLength;
+    }
+
+    /**
+     * Encrypt a secret.
+     *
+     * @param publicKey Public key of the container.
+     * @param compress  Compress the secret before encryption. It is only stored compressed if it gets smaller.
+     */
+    static byte[] encrypt(Key publicKey, byte[] data, boolean compress) throws GeneralSecurityException {
+        int flags = 0;
+        if (compress) {
+            byte[] compressed = compress(data);
+
+            if (compressed.length < data.length) {
+                data = compressed;
+                flags |= FLAG_COMPRESSED;
+            }
+        }
+
+        byte[] keys = new byte[KEY_LENGTH * 2];
+        byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(keys);
+        RANDOM.nextBytes(iv);
+
+        Cipher keyCipher = Cipher.getInstance(KEY_WRAP_TRANSFORMATION);
+        keyCipher.init(Cipher.ENCRYPT_MODE, publicKey);
+        byte[] wrappedKeys = keyCipher.doFinal(keys);
+
+        Cipher cipher = Cipher.getInstance(DATA_TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(keys, 0, KEY_LENGTH, "AES"), new IvParameterSpec(iv));
+        byte[] encrypted = cipher.doFinal(data);
+
+        byte[] header = new byte[HEADER_LENGTH];
+        writeHeader(header, VERSION, flags, wrappedKeys.length);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_LENGTH + wrappedKeys.length + IV_LENGTH + encrypted.length + MAC_LENGTH);
+        out.write(header, 0, header.length);
+        out.write(wrappedKeys, 0, wrappedKeys.length);
+        out.write(iv, 0, iv.length);
+        out.write(encrypted, 0, encrypted.length);
+
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(new SecretKeySpec(keys, KEY_LENGTH, KEY_LENGTH, MAC_ALGORITHM));
+        byte[] tag = mac.doFinal(out.toByteArray());
+        out.write(tag, 0, tag.length);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Decrypt a secret encrypted by {@link #encrypt(Key, byte[], boolean)}. A compressed secret is decompressed.
+     *
+     * @param privateKey Private key of the container.
+     * @throws GeneralSecurityException If the data is damaged or the key does not match.
+     */
+    static byte[] decrypt(Key privateKey, byte[] data) throws GeneralSecurityException {
+        if (!isEncrypted(data)) {
+            throw new GeneralSecurityException("Data is not an encrypted backup");
+        }
+        if (data[VERSION_OFFSET] == VERSION_STREAM) {
+            try {
+                return readFully(decrypt(privateKey, new ByteArrayInputStream(data)));
+            } catch (IOException e) {
+                throw new GeneralSecurityException("Could not decrypt backup", e);
+            }
+        }
+
+        int flags = data[FLAGS_OFFSET];
+        int wrappedKeysLength = wrappedKeysLength(data);
+        int ivOffset = HEADER_LENGTH + wrappedKeysLength;
+        int encryptedOffset = ivOffset + IV_LENGTH;
+        int macOffset = data.length - MAC_LENGTH;
+
+        if (macOffset < encryptedOffset) {
+            throw new GeneralSecurityException("Encrypted backup is truncated");
+        }
+
+        Cipher keyCipher = Cipher.getInstance(KEY_WRAP_TRANSFORMATION);
+        keyCipher.init(Cipher.DECRYPT_MODE, privateKey);
+        byte[] keys = keyCipher.doFinal(data, HEADER_LENGTH, wrappedKeysLength);
+
+        if (keys.length != KEY_LENGTH * 2) {
+            throw new GeneralSecurityException("Invalid key length");
+        }
+
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(new SecretKeySpec(keys, KEY_LENGTH, KEY_LENGTH, MAC_ALGORITHM));
+        mac.update(data, 0, macOffset);
+        byte[] tag = new byte[MAC_LENGTH];
+        System.arraycopy(data, macOffset, tag, 0, MAC_LENGTH);
+
+        if (!MessageDigest.isEqual(mac.doFinal(), tag)) {
+            throw new GeneralSecurityException("Encrypted backup was modified");
+        }
+
+        Cipher cipher = Cipher.getInstance(DATA_TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(keys, 0, KEY_LENGTH, "AES"), new IvParameterSpec(data, ivOffset, IV_LENGTH));
+        byte[] decrypted = cipher.doFinal(data, encryptedOffset, macOffset - encryptedOffset);
+
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            try {
+                decrypted = decompress(decrypted);
+            } catch (IOException e) {
+                throw new GeneralSecurityException("Compressed backup is damaged", e);
+            }
+        }
+
+        return decrypted;
+    }
+
+    /**
+     * Create a stream that encrypts everything written to it. The encrypted backup is written to
+     * {@code out} in chunks, so the secret never needs to be held in memory as a whole. The backup is
+     * complete when the returned stream is closed, which also closes {@code out}.
+     *
+     * @param publicKey Public key of the container.
+     * @param compress  Compress the secret before encryption.
+     */
+    static OutputStream encrypt(Key publicKey, OutputStream out, boolean compress) throws IOException, GeneralSecurityException {
+        byte[] keys = new byte[KEY_LENGTH * 2];
+        RANDOM.nextBytes(keys);
+
+        Cipher keyCipher = Cipher.getInstance(KEY_WRAP_TRANSFORMATION);
+        keyCipher.init(Cipher.ENCRYPT_MODE, publicKey);
+        byte[] wrappedKeys = keyCipher.doFinal(keys);
+
+        byte[] header = new byte[HEADER_LENGTH + wrappedKeys.length];
+        writeHeader(header, VERSION_STREAM, compress ? FLAG_COMPRESSED : 0, wrappedKeys.length);
+        System.arraycopy(wrappedKeys, 0, header, HEADER_LENGTH, wrappedKeys.length);
+
+        out.write(header);
+
+        OutputStream encryptingStream = new EncryptingOutputStream(out, keys, MessageDigest.getInstance(DIGEST_ALGORITHM).digest(header));
+        return compress ? new DeflaterOutputStream(encryptingStream) : encryptingStream;
+    }
+
+    /**
+     * Create a stream that decrypts a backup read from {@code in}. Backups of both versions can be
+     * read, but only version 2 is decrypted chunk by chunk. Reading throws an {@link IOException} if
+     * the backup was modified or is incomplete. {@code in} stays open if this method throws, so the
+     * caller can read it again in another format.
+     *
+     * @param privateKey Private key of the container.
+     * @throws GeneralSecurityException If the data is no encrypted backup or the key does not match.
+     */
+    static InputStream decrypt(Key privateKey, InputStream in) throws IOException, GeneralSecurityException {
+        DataInputStream dataIn = new DataInputStream(in);
+
+        byte[] start = new byte[HEADER_LENGTH];
+        dataIn.readFully(start);
+        if (!hasHeader(start)) {
+            throw new GeneralSecurityException("Data is not an encrypted backup");
+        }
+
+        int wrappedKeysLength = wrappedKeysLength(start);
+        byte[] header = new byte[start.length + wrappedKeysLength];
+        System.arraycopy(start, 0, header, 0, start.length);
+        dataIn.readFully(header, start.length, wrappedKeysLength);
+
+        if (header[VERSION_OFFSET] == VERSION) {
+            // version 1 is authenticated as a whole
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            data.write(header, 0, header.length);
+            copy(dataIn, data);
+
+            return new ByteArrayInputStream(decrypt(privateKey, data.toByteArray()));
+        }
+        Cipher keyCipher = Cipher.getInstance(KEY_WRAP_TRANSFORMATION);
+        keyCipher.init(Cipher.DECRYPT_MODE, privateKey);
+        byte[] keys = keyCipher.doFinal(header, HEADER_LENGTH, wrappedKeysLength);
+
+        if (keys.length != KEY_LENGTH * 2) {
+            throw new GeneralSecurityException("Invalid key length");
+        }
+
+        InputStream decryptingStream = new DecryptingInputStream(dataIn, keys, MessageDigest.getInstance(DIGEST_ALGORITHM).digest(header));
+        return (header[FLAGS_OFFSET] & FLAG_COMPRESSED) != 0 ? new InflaterInputStream(decryptingStream) : decryptingStream;
+    }
+
+    static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try {
+            copy(in, out);
+        } finally {
+            in.close();
+        }
+
+        return out.toByteArray();
+    }
+
+    private static byte[] compress(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+        try {
+            DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater);
+            deflaterOut.write(data);
+            deflaterOut.close();
+        } catch (IOException e) {
+            // not thrown by a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] data) throws IOException {
+        return readFully(new InflaterInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static byte[] chunkMac(Mac mac, byte[] headerDigest, long index, int length, byte[] iv, byte[] encrypted, int encryptedLength) {
+        mac.update(headerDigest);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            mac.update((byte) (index >> shift));
+        }
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            mac.update((byte) (length >> shift));
+        }
+        mac.update(iv);
+        mac.update(encrypted, 0, encryptedLength);
+
+        return mac.doFinal();
+    }
+
+    /**
+     * Encrypts data in chunks of {@link #CHUNK_SIZE} bytes.
+     */
+    private static class EncryptingOutputStream extends OutputStream {
+        private final OutputStream mOut;
+        private final SecretKeySpec mKey;
+        private final Cipher mCipher;
+        private final Mac mMac;
+        private final byte[] mHeaderDigest;
+        private final byte[] mBuffer = new byte[CHUNK_SIZE];
+        private final byte[] mIv = new byte[IV_LENGTH];
+
+        private int mCount;
+        private long mChunkIndex;
+        private boolean mClosed;
+
+        EncryptingOutputStream(OutputStream out, byte[] keys, byte[] headerDigest) throws GeneralSecurityException {
+            mOut = out;
+            mKey = new SecretKeySpec(keys, 0, KEY_LENGTH, "AES");
+            mCipher = Cipher.getInstance(DATA_TRANSFORMATION);
+            mMac = Mac.getInstance(MAC_ALGORITHM);
+            mMac.init(new SecretKeySpec(keys, KEY_LENGTH, KEY_LENGTH, MAC_ALGORITHM));
+            mHeaderDigest = headerDigest;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            if (mCount == CHUNK_SIZE) {
+                writeChunk(false);
+            }
+            mBuffer[mCount++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            while (len > 0) {
+                if (mCount == CHUNK_SIZE) {
+                    writeChunk(false);
+                }
+
+                int count = Math.min(len, CHUNK_SIZE - mCount);
+                System.arraycopy(b, off, mBuffer, mCount, count);
+                mCount += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            mOut.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+
+            try {
+                writeChunk(true);
+            } finally {
+                mOut.close();
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (mClosed) {
+                throw new IOException("Stream is closed");
+            }
+        }
+
+        private void writeChunk(boolean last) throws IOException {
+            try {
+                RANDOM.nextBytes(mIv);
+                mCipher.init(Cipher.ENCRYPT_MODE, mKey, new IvParameterSpec(mIv));
+                byte[] encrypted = mCipher.doFinal(mBuffer, 0, mCount);
+
+                int length = encrypted.length | (last ? LAST_CHUNK : 0);
+                byte[] tag = chunkMac(mMac, mHeaderDigest, mChunkIndex++, length, mIv, encrypted, encrypted.length);
+
+                mOut.write(length >>> 24);
+                mOut.write(length >>> 16);
+                mOut.write(length >>> 8);
+                mOut.write(length);
+                mOut.write(mIv);
+                mOut.write(encrypted);
+                mOut.write(tag);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not encrypt backup", e);
+            }
+
+            mCount = 0;
+        }
+    }
+
+    /**
+     * Verifies and decrypts chunks written by {@link EncryptingOutputStream}.
+     */
+    private static class DecryptingInputStream extends InputStream {
+        private static final int MAXIMUM_CHUNK_LENGTH = CHUNK_SIZE + IV_LENGTH;
+
+        private final DataInputStream mIn;
+        private final SecretKeySpec mKey;
+        private final Cipher mCipher;
+        private final Mac mMac;
+        private final byte[] mHeaderDigest;
+        private final byte[] mIv = new byte[IV_LENGTH];
+        private final byte[] mEncrypted = new byte[MAXIMUM_CHUNK_LENGTH];
+        private final byte[] mTag = new byte[MAC_LENGTH];
+
+        private byte[] mChunk = new byte[0];
+        private int mPosition;
+        private long mChunkIndex;
+        private boolean mLastChunkRead;
+
+        DecryptingInputStream(DataInputStream in, byte[] keys, byte[] headerDigest) throws GeneralSecurityException {
+            mIn = in;
+            mKey = new SecretKeySpec(keys, 0, KEY_LENGTH, "AES");
+            mCipher = Cipher.getInstance(DATA_TRANSFORMATION);
+            mMac = Mac.getInstance(MAC_ALGORITHM);
+            mMac.init(new SecretKeySpec(keys, KEY_LENGTH, KEY_LENGTH, MAC_ALGORITHM));
+            mHeaderDigest = headerDigest;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return mChunk[mPosition++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+
+            int count = Math.min(len, mChunk.length - mPosition);
+            System.arraycopy(mChunk, mPosition, b, off, count);
+            mPosition += count;
+
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return mChunk.length - mPosition;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mIn.close();
+        }
+
+        /**
+         * @return False if all chunks were read.
+         */
+        private boolean fill() throws IOException {
+            while (mPosition == mChunk.length) {
+                if (mLastChunkRead) {
+                    return false;
+                }
+                readChunk();
+            }
+            return true;
+        }
+
+        private void readChunk() throws IOException {
+            int length;
+            try {
+                length = mIn.readInt();
+            } catch (EOFException e) {
+                throw new IOException("Encrypted backup is truncated", e);
+            }
+
+            int encryptedLength = length & ~LAST_CHUNK;
+            if (encryptedLength > MAXIMUM_CHUNK_LENGTH) {
+                throw new IOException("Invalid chunk length " + encryptedLength);
+            }
+
+            mIn.readFully(mIv);
+            mIn.readFully(mEncrypted, 0, encryptedLength);
+            mIn.readFully(mTag);
+
+            byte[] tag = chunkMac(mMac, mHeaderDigest, mChunkIndex++, length, mIv, mEncrypted, encryptedLength);
+            if (!MessageDigest.isEqual(tag, mTag)) {
+                throw new IOException("Encrypted backup was modified");
+            }
+
+            try {
+                mCipher.init(Cipher.DECRYPT_MODE, mKey, new IvParameterSpec(mIv));
+                mChunk = mCipher.doFinal(mEncrypted, 0, encryptedLength);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not decrypt backup", e);
+            }
+
+            mPosition = 0;
+            mLastChunkRead = (length & LAST_CHUNK) != 0;
+        }
+    }
+}
@@ -6,27 +6,36 @@ import android.database.Cursor;
 import android.os.Parcel;
 import android.text.TextUtils;
 import android.util.Base64;
+import android.util.Log;
 
 import com.secure.key.backup.BackupImp;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+
 class BackupImpl extends BackupImp implements Backup {
+    private static final String TAG = "BackupImpl";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     private long mId;
     private Backup.BackupStoreMethod mStoreMethod;
     private String mCloudPath;
+    private String mRestoredData;
 
     public BackupImpl() {
 
     }
 
-    public BackupImpl(Cursor cursor) {
-        int storeMethodIndex = cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_STORE_METHOD);
-
-        mId = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.Backup._ID));
-        mName = cursor.getString(cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_NAME));
-        mTimestamp = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_TIMESTAMP));
-        mEncryptedData = cursor.getBlob(cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_DATA));
-        mStoreMethod = Backup.BackupStoreMethod.valueOf(cursor.getString(storeMethodIndex));
-        mCloudPath = cursor.getString(cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_CLOUD_PATH));
+    private BackupImpl(Cursor cursor, Mapper mapper) {
+        mId = cursor.getLong(mapper.mIdIndex);
+        mName = cursor.getString(mapper.mNameIndex);
+        mTimestamp = cursor.getLong(mapper.mTimestampIndex);
+        mEncryptedData = cursor.getBlob(mapper.mDataIndex);
+        mStoreMethod = Backup.BackupStoreMethod.valueOf(cursor.getString(mapper.mStoreMethodIndex));
+        mCloudPath = cursor.getString(mapper.mCloudPathIndex);
     }
 
     public void save(Context context) {
@@ -79,14 +88,83 @@ class BackupImpl extends BackupImp implements Backup {
         return values;
     }
 
+    @Override
+    public void encrypt(String data, boolean compress) {
+        try {
+            mEncryptedData = BackupCipher.encrypt(mPublicKey, data.getBytes(UTF_8), compress);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt backup", e);
+        }
+    }
+
+    @Override
+    public void encrypt(InputStream data, OutputStream out, boolean compress) throws IOException {
+        try {
+            OutputStream encryptingStream;
+            try {
+                encryptingStream = BackupCipher.encrypt(mPublicKey, out, compress);
+            } catch (GeneralSecurityException e) {
+                out.close();
+                throw new IllegalStateException("Could not encrypt backup", e);
+            }
+
+            try {
+                BackupCipher.copy(data, encryptingStream);
+            } finally {
+                encryptingStream.close();
+            }
+        } finally {
+            data.close();
+        }
+    }
+
+    /**
+     * Open a stream that decrypts a backup written by {@link #encrypt(InputStream, OutputStream, boolean)}
+     * or {@link #encrypt(String, boolean)}. The header is read and the key is unwrapped before this
+     * method returns, so a backup in another format fails here before any data is decrypted.
+     *
+     * @throws GeneralSecurityException If the data is no encrypted backup or the private key does not match.
+     * @throws IOException If the backup could not be read. Reading the returned stream throws if the
+     * backup was modified.
+     */
+    InputStream openDecryptingStream(InputStream encryptedData) throws IOException, GeneralSecurityException {
+        return BackupCipher.decrypt(mPrivateKey, encryptedData);
+    }
+
     @Override
     public void decrypt(String encryptedData) {
+        // a secret of an earlier call must not be returned for this backup
+        mRestoredData = null;
+
         // use android library for base64 decoding
+        byte[] data;
         try {
-            decrypt(Base64.decode(encryptedData, Base64.DEFAULT));
+            data = Base64.decode(encryptedData, Base64.DEFAULT);
         } catch (IllegalArgumentException e) {
             // exception is raised when user scanned arbitrary qr code instead of base64 encoded backup
+            return;
+        }
+
+        if (BackupCipher.isEncrypted(data)) {
+            try {
+                mRestoredData = new String(BackupCipher.decrypt(mPrivateKey, data), UTF_8);
+                return;
+            } catch (GeneralSecurityException e) {
+                // an older backup can start with a valid header by chance
+                Log.w(TAG, "Could not decrypt backup, trying older format", e);
+            }
         }
+
+        decrypt(data);
+    }
+
+    @Override
+    public String getDecryptedData() {
+        if (mRestoredData != null) {
+            return mRestoredData;
+        }
+
+        return super.getDecryptedData();
     }
 
     @Override
@@ -142,6 +220,32 @@ class BackupImpl extends BackupImp implements Backup {
         mCloudPath = in.readString();
     }
 
+    /**
+     * Maps rows of the backup table.
+     */
+    static class Mapper implements RowMapper<BackupImpl> {
+        private final int mIdIndex;
+        private final int mNameIndex;
+        private final int mTimestampIndex;
+        private final int mDataIndex;
+        private final int mStoreMethodIndex;
+        private final int mCloudPathIndex;
+
+        Mapper(Cursor cursor) {
+            mIdIndex = cursor.getColumnIndex(SecretSharingContract.Backup._ID);
+            mNameIndex = cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_NAME);
+            mTimestampIndex = cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_TIMESTAMP);
+            mDataIndex = cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_DATA);
+            mStoreMethodIndex = cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_STORE_METHOD);
+            mCloudPathIndex = cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_CLOUD_PATH);
+        }
+
+        @Override
+        public BackupImpl map(Cursor cursor) {
+            return new BackupImpl(cursor, this);
+        }
+    }
+
     public static final Creator<BackupImpl> CREATOR = new Creator<BackupImpl>() {
         @Override
         public BackupImpl createFromParcel(Parcel source) {
@@ -0,0 +1,37 @@
+package com.android.secret.sharing;
+
+import android.content.Context;
+
+/**
+ * Metadata of a saved {@link Backup}. The encrypted data is not loaded until {@link #load(Context)}
+ * is called.
+ */
+public interface BackupSummary extends SecretPresentation {
+
+    /**
+     * Get the specified store method of the backup.
+     */
+    Backup.BackupStoreMethod getStoreMethod();
+
+    /**
+     * True if the encrypted data of the backup is stored in the database of this library.
+     */
+    boolean hasData();
+
+    /**
+     * Was the backup saved to cloud?
+     */
+    boolean isAvailableInCloudStorage();
+
+    /**
+     * Get path to the backup in cloud storage.
+     */
+    String getCloudStoragePath();
+
+    /**
+     * Load the complete backup including its encrypted data from the database of this library.
+     *
+     * @return The backup or null if it was deleted in the meantime.
+     */
+    Backup load(Context context);
+}
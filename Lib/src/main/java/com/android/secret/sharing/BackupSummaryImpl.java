@@ -0,0 +1,100 @@
+package com.android.secret.sharing;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.text.TextUtils;
+
+class BackupSummaryImpl implements BackupSummary {
+    private static final String COLUMN_HAS_DATA = "has_data";
+
+    // the encrypted data is replaced by a flag whether it is stored
+    static final String[] PROJECTION = new String[] {
+            SecretSharingContract.Backup._ID,
+            SecretSharingContract.Backup.COLUMN_NAME,
+            SecretSharingContract.Backup.COLUMN_TIMESTAMP,
+            SecretSharingContract.Backup.COLUMN_STORE_METHOD,
+            SecretSharingContract.Backup.COLUMN_CLOUD_PATH,
+            SecretSharingContract.Backup.COLUMN_DATA + " IS NOT NULL AS " + COLUMN_HAS_DATA
+    };
+
+    private long mId;
+    private String mName;
+    private long mTimestamp;
+    private Backup.BackupStoreMethod mStoreMethod;
+    private String mCloudPath;
+    private boolean mHasData;
+
+    private BackupSummaryImpl(Cursor cursor, Mapper mapper) {
+        mId = cursor.getLong(mapper.mIdIndex);
+        mName = cursor.getString(mapper.mNameIndex);
+        mTimestamp = cursor.getLong(mapper.mTimestampIndex);
+        mStoreMethod = Backup.BackupStoreMethod.valueOf(cursor.getString(mapper.mStoreMethodIndex));
+        mCloudPath = cursor.getString(mapper.mCloudPathIndex);
+        mHasData = cursor.getInt(mapper.mHasDataIndex) == 1;
+    }
+
+    long getId() {
+        return mId;
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    @Override
+    public Backup.BackupStoreMethod getStoreMethod() {
+        return mStoreMethod;
+    }
+
+    @Override
+    public boolean hasData() {
+        return mHasData;
+    }
+
+    @Override
+    public boolean isAvailableInCloudStorage() {
+        return !TextUtils.isEmpty(mCloudPath);
+    }
+
+    @Override
+    public String getCloudStoragePath() {
+        return mCloudPath;
+    }
+
+    @Override
+    public Backup load(Context context) {
+        return DatabaseHelper.getHelper(context).loadBackup(mId);
+    }
+
+    /**
+     * Maps rows of the backup table queried with {@link #PROJECTION}.
+     */
+    static class Mapper implements RowMapper<BackupSummaryImpl> {
+        private final int mIdIndex;
+        private final int mNameIndex;
+        private final int mTimestampIndex;
+        private final int mStoreMethodIndex;
+        private final int mCloudPathIndex;
+        private final int mHasDataIndex;
+
+        Mapper(Cursor cursor) {
+            mIdIndex = cursor.getColumnIndex(SecretSharingContract.Backup._ID);
+            mNameIndex = cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_NAME);
+            mTimestampIndex = cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_TIMESTAMP);
+            mStoreMethodIndex = cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_STORE_METHOD);
+            mCloudPathIndex = cursor.getColumnIndex(SecretSharingContract.Backup.COLUMN_CLOUD_PATH);
+            mHasDataIndex = cursor.getColumnIndex(COLUMN_HAS_DATA);
+        }
+
+        @Override
+        public BackupSummaryImpl map(Cursor cursor) {
+            return new BackupSummaryImpl(cursor, this);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.android.secret.sharing;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Small pool of bitmaps that are reused for temporary images like Email attachment pages. Released
+ * bitmaps are overwritten, so no QR-Code stays in memory.
+ */
+class BitmapPool {
+    private static final int MAXIMUM_POOL_SIZE = 2;
+
+    private static final BitmapPool mPool = new BitmapPool();
+
+    private final List<Bitmap> mBitmaps = new ArrayList<>(MAXIMUM_POOL_SIZE);
+
+    static BitmapPool getPool() {
+        return mPool;
+    }
+
+    private BitmapPool() {
+    }
+
+    /**
+     * Get a white bitmap. It is taken from the pool if a bitmap with the same size and configuration
+     * was released before.
+     */
+    synchronized Bitmap acquire(int width, int height, Bitmap.Config config) {
+        Iterator<Bitmap> iterator = mBitmaps.iterator();
+        while (iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                iterator.remove();
+                return bitmap;
+            }
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+        bitmap.eraseColor(Color.WHITE);
+        return bitmap;
+    }
+
+    /**
+     * Give a bitmap back to the pool. It must not be used afterwards.
+     */
+    synchronized void release(Bitmap bitmap) {
+        if (bitmap.isRecycled()) {
+            return;
+        }
+
+        if (mBitmaps.size() < MAXIMUM_POOL_SIZE && bitmap.isMutable()) {
+            bitmap.eraseColor(Color.WHITE);
+            mBitmaps.add(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Free all pooled bitmaps.
+     */
+    synchronized void clear() {
+        for (Bitmap bitmap : mBitmaps) {
+            bitmap.recycle();
+        }
+        mBitmaps.clear();
+    }
+}
@@ -2,10 +2,15 @@ package com.android.secret.sharing;
 
 import android.content.Context;
 import android.os.Environment;
+import android.util.Base64;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 
 /**
@@ -41,6 +46,59 @@ public class Cloud {
         }
     }
 
+    /**
+     * Encrypt a secret directly into a file. The secret is read and encrypted in chunks, so large
+     * secrets are never held in memory as a whole.
+     */
+    public static void save(Context context, Backup backup, InputStream data, boolean compress) {
+        File directory = new File(DIRECTORY);
+        if (!directory.isDirectory()) {
+            directory.mkdir();
+        }
+
+        String path = DIRECTORY + backup.getName();
+        File backupFile = new File(path);
+        try {
+            boolean fileExists = !backupFile.createNewFile();
+
+            if (fileExists) {
+                data.close();
+                return;
+            }
+
+            backup.encrypt(data, new FileOutputStream(backupFile), compress);
+
+            ((BackupImpl) backup).setCloudPath(path);
+            backup.save(context);
+        } catch (IOException e) {
+            backupFile.delete();
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Open the encrypted backup file for reading.
+     *
+     * @return Stream of the encrypted backup or null if the backup does not exist.
+     */
+    public static InputStream openBackup(Backup backup) {
+        File backupFile = new File(DIRECTORY + backup.getName());
+
+        try {
+            return new FileInputStream(backupFile);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the encrypted backup file as text for {@link Container#restoreBackup(KeyPart[], String)}.
+     * Backups that were written with {@link #save(Context, Backup, InputStream, boolean)} are binary,
+     * they are returned base64 encoded. Prefer {@link #openBackup(Backup)} for these backups, since
+     * this method reads the whole file into memory.
+     *
+     * @return Encrypted backup or null if the backup does not exist or could not be read.
+     */
     public static String getBackup(Backup backup) {
         File directory = new File(DIRECTORY);
         File backupFile = new File(DIRECTORY + backup.getName());
@@ -54,11 +112,20 @@ public class Cloud {
         byte[] bytes = new byte[length];
 
         try {
-            FileInputStream  in = new FileInputStream(backupFile);
-            in.read(bytes);
-            in.close();
+            DataInputStream in = new DataInputStream(new FileInputStream(backupFile));
+            try {
+                in.readFully(bytes);
+            } finally {
+                in.close();
+            }
         } catch (IOException e) {
             e.printStackTrace();
+            return null;
+        }
+
+        if (BackupCipher.hasHeader(bytes)) {
+            // base64 text never starts with the header of a binary backup
+            return Base64.encodeToString(bytes, Base64.DEFAULT);
         }
 
         return new String(bytes);
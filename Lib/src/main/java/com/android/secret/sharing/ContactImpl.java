@@ -5,7 +5,6 @@ import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
@@ -39,16 +38,16 @@ class ContactImpl implements com.android.secret.sharing.Contact {
 
     }
 
-    ContactImpl(Cursor cursor) {
-        mId = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.Contact._ID));
-        mContainerId = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_Container_ID));
-        mName = cursor.getString(cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_NAME));
-        mEmail = cursor.getString(cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_EMAIL));
-        mSendStatus = SendStatus.getStatus(cursor.getInt(cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_SEND_STATUS)));
-        mSendMethod = SendMethod.valueOf(cursor.getString(cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_SEND_METHOD)));
-        mKeyPartId = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_KEY_PART_ID));
-        mLookupKey = cursor.getString(cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_LOOKUP_KEY));
-        mContactId = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_CONTACT_ID));
+    private ContactImpl(Cursor cursor, Mapper mapper) {
+        mId = cursor.getLong(mapper.mIdIndex);
+        mContainerId = cursor.getLong(mapper.mContainerIdIndex);
+        mName = cursor.getString(mapper.mNameIndex);
+        mEmail = cursor.getString(mapper.mEmailIndex);
+        mSendStatus = SendStatus.getStatus(cursor.getInt(mapper.mSendStatusIndex));
+        mSendMethod = SendMethod.valueOf(cursor.getString(mapper.mSendMethodIndex));
+        mKeyPartId = cursor.getLong(mapper.mKeyPartIdIndex);
+        mLookupKey = cursor.getString(mapper.mLookupKeyIndex);
+        mContactId = cursor.getLong(mapper.mContactIdIndex);
     }
 
     @Override
@@ -116,7 +115,7 @@ class ContactImpl implements com.android.secret.sharing.Contact {
 
     @Override
     public void save(Context context) {
-        SQLiteDatabase db = DatabaseHelper.getHelper(context).getDatabase();
+        DatabaseHelper db = DatabaseHelper.getHelper(context);
 
         if (mId > 0) {
             String where = SecretSharingContract.Contact._ID + "=?";
@@ -124,7 +123,7 @@ class ContactImpl implements com.android.secret.sharing.Contact {
 
             db.update(SecretSharingContract.Contact.TABLE_NAME, toValues(context), where, whereArgs);
         } else {
-            mId = db.insert(SecretSharingContract.Contact.TABLE_NAME, null, toValues(context));
+            mId = db.save(SecretSharingContract.Contact.TABLE_NAME, toValues(context));
         }
     }
 
@@ -188,8 +187,7 @@ class ContactImpl implements com.android.secret.sharing.Contact {
         String where = SecretSharingContract.Contact._ID + "=?";
         String[] whereArgs = new String[] { String.valueOf(mId) };
 
-        SQLiteDatabase db = DatabaseHelper.getHelper(context).getDatabase();
-        db.delete(SecretSharingContract.Contact.TABLE_NAME, where, whereArgs);
+        DatabaseHelper.getHelper(context).delete(SecretSharingContract.Contact.TABLE_NAME, where, whereArgs);
     }
 
     @Override
@@ -315,6 +313,38 @@ class ContactImpl implements com.android.secret.sharing.Contact {
         mContactId = in.readLong();
     }
 
+    /**
+     * Maps rows of the contact table.
+     */
+    static class Mapper implements RowMapper<ContactImpl> {
+        private final int mIdIndex;
+        private final int mContainerIdIndex;
+        private final int mNameIndex;
+        private final int mEmailIndex;
+        private final int mSendStatusIndex;
+        private final int mSendMethodIndex;
+        private final int mKeyPartIdIndex;
+        private final int mLookupKeyIndex;
+        private final int mContactIdIndex;
+
+        Mapper(Cursor cursor) {
+            mIdIndex = cursor.getColumnIndex(SecretSharingContract.Contact._ID);
+            mContainerIdIndex = cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_Container_ID);
+            mNameIndex = cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_NAME);
+            mEmailIndex = cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_EMAIL);
+            mSendStatusIndex = cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_SEND_STATUS);
+            mSendMethodIndex = cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_SEND_METHOD);
+            mKeyPartIdIndex = cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_KEY_PART_ID);
+            mLookupKeyIndex = cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_LOOKUP_KEY);
+            mContactIdIndex = cursor.getColumnIndex(SecretSharingContract.Contact.COLUMN_CONTACT_ID);
+        }
+
+        @Override
+        public ContactImpl map(Cursor cursor) {
+            return new ContactImpl(cursor, this);
+        }
+    }
+
     public static final Parcelable.Creator<ContactImpl> CREATOR = new Parcelable.Creator<ContactImpl>() {
         @Override
         public ContactImpl createFromParcel(Parcel source) {
@@ -3,7 +3,6 @@ package com.android.secret.sharing;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.CursorJoiner;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Bundle;
 import android.provider.ContactsContract;
 import android.support.v4.app.LoaderManager;
@@ -44,6 +43,8 @@ public class ContactLoader implements LoaderManager.LoaderCallbacks<Cursor> {
         String[] columnNamesLeft = new String[] { ContactsContract.Contacts.DISPLAY_NAME, ContactsContract.Contacts._ID };
         String[] columnNamesRight = new String[] { SecretSharingContract.Contact.COLUMN_NAME, SecretSharingContract.Contact.COLUMN_CONTACT_ID };
 
+        ContactImpl.Mapper mapper = new ContactImpl.Mapper(secretContactsCursor);
+
         CursorJoiner joiner = new CursorJoiner(data, columnNamesLeft, secretContactsCursor, columnNamesRight);
         for (CursorJoiner.Result joinerResult : joiner) {
             ContactImpl contact = null;
@@ -61,7 +62,7 @@ public class ContactLoader implements LoaderManager.LoaderCallbacks<Cursor> {
                 case RIGHT:
                     // contact only in database of this library => id changed
 
-                    contact = new ContactImpl(secretContactsCursor);
+                    contact = mapper.map(secretContactsCursor);
                     boolean newIdFound = contact.updateContactId(mContext);
 
                     if (newIdFound) {
@@ -72,13 +73,15 @@ public class ContactLoader implements LoaderManager.LoaderCallbacks<Cursor> {
 
                     break;
                 case BOTH:
-                    contact = new ContactImpl(secretContactsCursor);
+                    contact = mapper.map(secretContactsCursor);
                     break;
             }
 
             contacts.add(contact);
         }
 
+        secretContactsCursor.close();
+
         if (updatedContacts.size() > 0) {
 
             loop:
@@ -119,8 +122,10 @@ public class ContactLoader implements LoaderManager.LoaderCallbacks<Cursor> {
 
         ArrayList<Contact> contacts = new ArrayList<>();
         if (cursor != null) {
+            ContactImpl.Mapper mapper = new ContactImpl.Mapper(cursor);
+
             while (cursor.moveToNext()) {
-                contacts.add(new ContactImpl(cursor));
+                contacts.add(mapper.map(cursor));
             }
 
             cursor.close();
@@ -129,13 +134,11 @@ public class ContactLoader implements LoaderManager.LoaderCallbacks<Cursor> {
         mListener.contactsLoaded(contacts);
     }
 
+    /**
+     * The database stays open until the returned cursor is closed.
+     */
     private Cursor loadSecretContacts() {
-        String selection = SecretSharingContract.Contact.COLUMN_Container_ID + "=?";
-        String[] selectionArgs = new String[] { String.valueOf(mBackupId) };
-        String sortOrder = SecretSharingContract.Contact.COLUMN_NAME + " ASC, " + SecretSharingContract.Contact.COLUMN_CONTACT_ID + " ASC";
-
-        SQLiteDatabase db = DatabaseHelper.getHelper(mContext).getDatabase();
-        return db.query(SecretSharingContract.Contact.TABLE_NAME, null, selection, selectionArgs, null, null, sortOrder);
+        return DatabaseHelper.getHelper(mContext).queryContacts(mBackupId);
     }
 
     public interface ContactLoaderListener {
@@ -3,6 +3,10 @@ package com.android.secret.sharing;
 import android.content.Context;
 import android.os.Parcelable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 /**
  * The container is responsible for generating the private and public key. It splits the
  * private key into multiple {@link KeyPart key parts}. New backups can be created and
@@ -72,6 +76,17 @@ public interface Container extends SecretPresentation, Parcelable {
      */
     String restoreBackup(KeyPart[] keyParts, String encryptedBackup);
 
+    /**
+     * Restore a backup that was created by this container and write the secret to a stream. Large
+     * backups are decrypted in chunks. Both streams are closed when this method returns.
+     *
+     * @param keyParts Key parts of the private key.
+     * @param encryptedBackup Backup to restore.
+     * @param out Target of the decrypted backup.
+     * @throws IOException If the backup could not be read or decrypted.
+     */
+    void restoreBackup(KeyPart[] keyParts, InputStream encryptedBackup, OutputStream out) throws IOException;
+
     /**
      * Create a new backup that can only be decrypted by the private key of this container.
      *
@@ -4,13 +4,22 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.os.Parcel;
+import android.util.Log;
 
 import com.secure.key.backup.ContainerImp;
 import com.secure.key.backup.KeyPartImp;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
 import java.security.Key;
 
 class ContainerImpl extends ContainerImp implements Container {
+    private static final String TAG = "ContainerImpl";
+
     private long mId;
 
     protected byte[] mPublicKey;
@@ -18,13 +27,13 @@ class ContainerImpl extends ContainerImp implements Container {
     public ContainerImpl() {
     }
 
-    protected ContainerImpl(Cursor cursor) {
-        mId = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.Container._ID));
-        mName = cursor.getString(cursor.getColumnIndex(SecretSharingContract.Container.COLUMN_NAME));
-        mMinimumRecoverKeys = cursor.getInt(cursor.getColumnIndex(SecretSharingContract.Container.COLUMN_MINIMAL_KEY_PARTS));
-        mTotalParts = cursor.getInt(cursor.getColumnIndex(SecretSharingContract.Container.COLUMN_TOTAL_KEY_PARTS));
-        mTimestamp = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.Container.COLUMN_TIMESTAMP));
-        mPublicKey = cursor.getBlob(cursor.getColumnIndex(SecretSharingContract.Container.COLUMN_PUBLIC_KEY));
+    private ContainerImpl(Cursor cursor, Mapper mapper) {
+        mId = cursor.getLong(mapper.mIdIndex);
+        mName = cursor.getString(mapper.mNameIndex);
+        mMinimumRecoverKeys = cursor.getInt(mapper.mMinimumKeyPartsIndex);
+        mTotalParts = cursor.getInt(mapper.mTotalKeyPartsIndex);
+        mTimestamp = cursor.getLong(mapper.mTimestampIndex);
+        mPublicKey = cursor.getBlob(mapper.mPublicKeyIndex);
     }
 
     @Override
@@ -37,13 +46,17 @@ class ContainerImpl extends ContainerImp implements Container {
 
     @Override
     public void save(Context context) {
+        DatabaseHelper helper = DatabaseHelper.getHelper(context);
+
         if (mId <= 0) {
-            mId = DatabaseHelper.getHelper(context).save(SecretSharingContract.Container.TABLE_NAME, toValues());
+            mId = helper.save(SecretSharingContract.Container.TABLE_NAME, toValues());
         } else {
             String where = SecretSharingContract.Container._ID + "=?";
             String[] whereArgs = new String[] { String.valueOf(mId) };
-            DatabaseHelper.getHelper(context).update(SecretSharingContract.Container.TABLE_NAME, toValues(), where, whereArgs);
+            helper.update(SecretSharingContract.Container.TABLE_NAME, toValues(), where, whereArgs);
         }
+
+        helper.putContainer(this);
     }
 
     @Override
@@ -57,6 +70,77 @@ class ContainerImpl extends ContainerImp implements Container {
         return backup.getDecryptedData();
     }
 
+    @Override
+    public void restoreBackup(KeyPart[] keyParts, InputStream encryptedBackup, OutputStream out) throws IOException {
+        InputStream in = new BufferedInputStream(encryptedBackup);
+
+        try {
+            byte[] privateKeyBytes = restorePrivateKey((KeyPartImp[]) keyParts);
+
+            BackupImpl backup = new BackupImpl();
+            backup.setPrivateKey(privateKeyBytes);
+
+            // older backups are read into memory anyway, so they can be read again if the header matched by chance
+            in.mark(Integer.MAX_VALUE);
+            byte[] start = new byte[BackupCipher.HEADER_LENGTH];
+            int read = readFully(in, start);
+
+            if (read == start.length && BackupCipher.hasHeader(start)) {
+                in.reset();
+
+                InputStream decryptingStream = null;
+                try {
+                    decryptingStream = backup.openDecryptingStream(in);
+                } catch (GeneralSecurityException e) {
+                    Log.w(TAG, "Could not decrypt backup, trying older format", e);
+                }
+
+                if (decryptingStream != null) {
+                    // the key was unwrapped, do not buffer the rest of the backup
+                    in.mark(0);
+                    BackupCipher.copy(decryptingStream, out);
+                    return;
+                }
+            }
+
+            in.reset();
+            restoreLegacyBackup(backup, in, out);
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    /**
+     * Restore a backup that is stored as base64 text.
+     */
+    private static void restoreLegacyBackup(BackupImpl backup, InputStream in, OutputStream out) throws IOException {
+        ByteArrayOutputStream encryptedText = new ByteArrayOutputStream();
+        BackupCipher.copy(in, encryptedText);
+        backup.decrypt(encryptedText.toString("US-ASCII"));
+
+        String data = backup.getDecryptedData();
+        if (data == null) {
+            throw new IOException("Could not decrypt backup");
+        }
+        out.write(data.getBytes("UTF-8"));
+    }
+
+    /**
+     * @return Count of bytes read, less than the buffer size at the end of the stream.
+     */
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int count = 0;
+        while (count < buffer.length) {
+            int read = in.read(buffer, count, buffer.length - count);
+            if (read == -1) {
+                break;
+            }
+            count += read;
+        }
+        return count;
+    }
+
     @Override
     public Backup createBackup() {
         BackupImpl backup = new BackupImpl();
@@ -112,6 +196,78 @@ class ContainerImpl extends ContainerImp implements Container {
         this.mPublicKey = in.createByteArray();
     }
 
+    /**
+     * Immutable copy of the saved values of a container. Cached containers are stored as snapshots, so
+     * changes of a container that was not saved yet are not visible to other callers.
+     */
+    static final class Snapshot {
+        private final long mId;
+        private final String mName;
+        private final int mMinimumRecoverKeys;
+        private final int mTotalParts;
+        private final long mTimestamp;
+        private final byte[] mPublicKey;
+
+        Snapshot(ContainerImpl container) {
+            mId = container.mId;
+            mName = container.mName;
+            mMinimumRecoverKeys = container.mMinimumRecoverKeys;
+            mTotalParts = container.mTotalParts;
+            mTimestamp = container.mTimestamp;
+            mPublicKey = container.mPublicKey != null ? container.mPublicKey.clone() : null;
+        }
+
+        long getTimestamp() {
+            return mTimestamp;
+        }
+
+        int getMinimumRecoverParts() {
+            return mMinimumRecoverKeys;
+        }
+
+        /**
+         * @return A new container with the values of this snapshot.
+         */
+        ContainerImpl toContainer() {
+            return new ContainerImpl(this);
+        }
+    }
+
+    private ContainerImpl(Snapshot snapshot) {
+        mId = snapshot.mId;
+        mName = snapshot.mName;
+        mMinimumRecoverKeys = snapshot.mMinimumRecoverKeys;
+        mTotalParts = snapshot.mTotalParts;
+        mTimestamp = snapshot.mTimestamp;
+        mPublicKey = snapshot.mPublicKey != null ? snapshot.mPublicKey.clone() : null;
+    }
+
+    /**
+     * Maps rows of the container table.
+     */
+    static class Mapper implements RowMapper<ContainerImpl> {
+        private final int mIdIndex;
+        private final int mNameIndex;
+        private final int mMinimumKeyPartsIndex;
+        private final int mTotalKeyPartsIndex;
+        private final int mTimestampIndex;
+        private final int mPublicKeyIndex;
+
+        Mapper(Cursor cursor) {
+            mIdIndex = cursor.getColumnIndex(SecretSharingContract.Container._ID);
+            mNameIndex = cursor.getColumnIndex(SecretSharingContract.Container.COLUMN_NAME);
+            mMinimumKeyPartsIndex = cursor.getColumnIndex(SecretSharingContract.Container.COLUMN_MINIMAL_KEY_PARTS);
+            mTotalKeyPartsIndex = cursor.getColumnIndex(SecretSharingContract.Container.COLUMN_TOTAL_KEY_PARTS);
+            mTimestampIndex = cursor.getColumnIndex(SecretSharingContract.Container.COLUMN_TIMESTAMP);
+            mPublicKeyIndex = cursor.getColumnIndex(SecretSharingContract.Container.COLUMN_PUBLIC_KEY);
+        }
+
+        @Override
+        public ContainerImpl map(Cursor cursor) {
+            return new ContainerImpl(cursor, this);
+        }
+    }
+
     public static final Creator<ContainerImpl> CREATOR = new Creator<ContainerImpl>() {
         @Override
         public ContainerImpl createFromParcel(Parcel source) {
@@ -0,0 +1,87 @@
+package com.android.secret.sharing;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs database operations off the main thread. Writes are executed one after another on a single
+ * thread. Reads run on a small pool in parallel to the writer which is possible because the database
+ * uses write-ahead logging. Results and exceptions are delivered to the main thread.
+ */
+class DatabaseExecutor {
+    private static final int READ_THREADS = 2;
+
+    private final ExecutorService mWriteExecutor = Executors.newSingleThreadExecutor(new BackgroundThreadFactory("Database writer"));
+    private final ExecutorService mReadExecutor = Executors.newFixedThreadPool(READ_THREADS, new BackgroundThreadFactory("Database reader"));
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private static class Holder {
+        static final DatabaseExecutor INSTANCE = new DatabaseExecutor();
+    }
+
+    private DatabaseExecutor() {
+    }
+
+    static DatabaseExecutor getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Execute an operation that only reads from the database.
+     *
+     * @param listener Receives the result or the exception of the operation on the main thread. Can be null.
+     * @return Future of the operation. Exceptions of the operation are also reported through it.
+     */
+    <T> Future<T> read(Callable<T> operation, @Nullable ResultListener<T> listener) {
+        return submit(mReadExecutor, operation, listener);
+    }
+
+    /**
+     * Execute an operation that writes to the database.
+     *
+     * @param listener Receives the result or the exception of the operation on the main thread. Can be null.
+     * @return Future of the operation. Exceptions of the operation are also reported through it.
+     */
+    <T> Future<T> write(Callable<T> operation, @Nullable ResultListener<T> listener) {
+        return submit(mWriteExecutor, operation, listener);
+    }
+
+    private <T> Future<T> submit(ExecutorService executor, final Callable<T> operation, @Nullable final ResultListener<T> listener) {
+        return executor.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                final T result;
+                try {
+                    result = operation.call();
+                } catch (final Exception e) {
+                    if (listener != null) {
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                listener.onError(e);
+                            }
+                        });
+                    }
+                    throw e;
+                }
+
+                if (listener != null) {
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onResult(result);
+                        }
+                    });
+                }
+
+                return result;
+            }
+        });
+    }
+}
@@ -3,113 +3,298 @@ package com.android.secret.sharing;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.CursorWrapper;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.os.AsyncTask;
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
 
 import com.secure.key.backup.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
- * Contains helper methods to access the database of this library.
+ * Contains helper methods to access the database of this library. The helper is shared between all
+ * threads. Every operation holds a reference to the database while it runs, so the database is only
+ * closed after the last running operation has finished.
  */
 class DatabaseHelper {
     private static final String PREFERENCES = "shared_secret_prefs";
     private static final String PREF_USER_NAME = "user_name";
     private static final String PREF_KEY_SHARED = "key_shared";
 
-    private static DatabaseHelper mHelper;
-    private SQLiteDatabase mDatabase;
+    // lookups of single values that are executed with compiled statements of the statement cache
+    private static final String SELECT_CONTAINER_TIMESTAMP = "SELECT " + SecretSharingContract.Container.COLUMN_TIMESTAMP
+            + " FROM " + SecretSharingContract.Container.TABLE_NAME + " LIMIT 1";
+    private static final String SELECT_MINIMUM_KEY_PARTS = "SELECT " + SecretSharingContract.Container.COLUMN_MINIMAL_KEY_PARTS
+            + " FROM " + SecretSharingContract.Container.TABLE_NAME + " LIMIT 1";
+
+    // constant selection so that SQLite reuses the prepared statement of the connection
+    private static final String SELECTION_KEY_PART_ID = SecretSharingContract.KeyPart._ID + "=?";
+
+    private static final AtomicReference<DatabaseHelper> mHelper = new AtomicReference<>();
+
+    private final DatabaseOpenHelper mOpenHelper;
 
-    private String mUserName;
+    // one reference is held while this helper is the shared instance and one by every running operation
+    private final AtomicInteger mReferences = new AtomicInteger(1);
+    private final Object mOpenLock = new Object();
+    private final StatementCache mStatementCache = new StatementCache();
+
+    // write-through cache of the saved container, changed with every write to the container table
+    private final Object mContainerLock = new Object();
+    private volatile ContainerImpl.Snapshot mContainer;
+    private int mContainerVersion;
+
+    private volatile String mUserName;
     private boolean mKeyShared;
 
     private DatabaseHelper(Context context) {
-        mDatabase = new DatabaseOpenHelper(context).getWritableDatabase();
+        // the database is opened by the first operation
+        mOpenHelper = new DatabaseOpenHelper(context);
 
         mUserName = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).getString(PREF_USER_NAME, "");
         mKeyShared = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).getBoolean(PREF_KEY_SHARED, false);
     }
 
     public static DatabaseHelper getHelper(Context context) {
-        if (mHelper == null) {
-            mHelper = new DatabaseHelper(context);
+        DatabaseHelper helper = mHelper.get();
+
+        while (helper == null) {
+            // creating a helper is cheap, so a helper that loses the race is simply dropped
+            mHelper.compareAndSet(null, new DatabaseHelper(context.getApplicationContext()));
+            helper = mHelper.get();
+        }
+
+        return helper;
+    }
+
+    /**
+     * Get the database for an operation. Every call must be followed by a call of {@link #release()}
+     * when the operation is finished.
+     */
+    SQLiteDatabase acquire() {
+        int references;
+
+        do {
+            references = mReferences.get();
+
+            if (references == 0) {
+                // database is closed or about to be closed; wait for it and open it again
+                synchronized (mOpenLock) {
+                    mReferences.incrementAndGet();
+                }
+                return mOpenHelper.getWritableDatabase();
+            }
+        } while (!mReferences.compareAndSet(references, references + 1));
+
+        return mOpenHelper.getWritableDatabase();
+    }
+
+    /**
+     * Release a reference obtained by {@link #acquire()}. Closes the database if it was the last one.
+     */
+    void release() {
+        if (mReferences.decrementAndGet() == 0) {
+            synchronized (mOpenLock) {
+                // another operation may have acquired the database in the meantime
+                if (mReferences.get() == 0) {
+                    mStatementCache.clear();
+                    mOpenHelper.close();
+                }
+            }
         }
-        return mHelper;
     }
 
     public long save(String table, ContentValues values) {
-        return mDatabase.insert(table, null, values);
+        SQLiteDatabase db = acquire();
+        try {
+            return db.insert(table, null, values);
+        } finally {
+            release();
+            invalidateContainer(table);
+        }
     }
 
     public long update(String table, ContentValues values, String whereClause, String[] whereArgs) {
-        return mDatabase.update(table, values, whereClause, whereArgs);
+        SQLiteDatabase db = acquire();
+        try {
+            return db.update(table, values, whereClause, whereArgs);
+        } finally {
+            release();
+            invalidateContainer(table);
+        }
     }
 
-    public boolean keyShared() {
-        return mKeyShared;
+    public int delete(String table, String whereClause, String[] whereArgs) {
+        SQLiteDatabase db = acquire();
+        try {
+            return db.delete(table, whereClause, whereArgs);
+        } finally {
+            release();
+            invalidateContainer(table);
+        }
     }
 
-    public SQLiteDatabase getDatabase() {
-        return mDatabase;
+    public boolean keyShared() {
+        return mKeyShared;
     }
 
     public BackupImpl[] getAvailableBackups() {
         String selection = SecretSharingContract.Backup.COLUMN_DATA + " IS NOT NULL";
 
-        Cursor cursor = mDatabase.query(SecretSharingContract.Backup.TABLE_NAME, null, selection, null, null, null, null);
+        SQLiteDatabase db = acquire();
+        try {
+            Cursor cursor = db.query(SecretSharingContract.Backup.TABLE_NAME, null, selection, null, null, null, null);
 
-        BackupImpl[] availableBackups = null;
-        if (cursor != null) {
-            availableBackups = new BackupImpl[cursor.getCount()];
+            BackupImpl[] availableBackups = null;
+            if (cursor != null) {
+                availableBackups = new BackupImpl[cursor.getCount()];
+                BackupImpl.Mapper mapper = new BackupImpl.Mapper(cursor);
 
-            int i = 0;
-            while (cursor.moveToNext()) {
-                availableBackups[i++] = new BackupImpl(cursor);
+                int i = 0;
+                while (cursor.moveToNext()) {
+                    availableBackups[i++] = mapper.map(cursor);
+                }
+
+                cursor.close();
             }
 
-            cursor.close();
+            return availableBackups;
+        } finally {
+            release();
         }
-
-        return availableBackups;
     }
 
+    /**
+     * Get the container. It is loaded from the database only if it is not cached yet. Every call
+     * returns a new object, changes are only visible to others after the container was saved.
+     */
     public Container getContainer() {
-        Cursor cursor = mDatabase.query(SecretSharingContract.Container.TABLE_NAME, null, null, null, null, null, null);
+        ContainerImpl.Snapshot snapshot = mContainer;
+        if (snapshot != null) {
+            return snapshot.toContainer();
+        }
+
+        ContainerImpl container = null;
+        int version;
+        synchronized (mContainerLock) {
+            version = mContainerVersion;
+        }
+
+        SQLiteDatabase db = acquire();
+        try {
+            Cursor cursor = db.query(SecretSharingContract.Container.TABLE_NAME, null, null, null, null, null, null);
+
+            if (cursor != null) {
+                if (cursor.moveToNext()) {
+                    container = new ContainerImpl.Mapper(cursor).map(cursor);
+                }
 
-        Container container = null;
-        if (cursor != null) {
-            if (cursor.moveToNext()) {
-                container = new ContainerImpl(cursor);
+                cursor.close();
             }
+        } finally {
+            release();
+        }
 
-            cursor.close();
+        synchronized (mContainerLock) {
+            // do not cache the loaded container if it was changed while loading it
+            if (container != null && version == mContainerVersion) {
+                mContainer = new ContainerImpl.Snapshot(container);
+            }
         }
 
         return container;
     }
 
-    public KeyPartImpl[] getMyKeyParts() {
+    /**
+     * Replace the cached container after it was saved. Later changes of the container are not cached.
+     */
+    void putContainer(ContainerImpl container) {
+        ContainerImpl.Snapshot snapshot = new ContainerImpl.Snapshot(container);
 
-        String sql = "SELECT * FROM " + SecretSharingContract.KeyPart.TABLE_NAME + " WHERE " + SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN + "=? AND "
-                + SecretSharingContract.KeyPart._ID + " NOT IN (SELECT "
-                + SecretSharingContract.Contact.COLUMN_KEY_PART_ID + " FROM " + SecretSharingContract.Contact.TABLE_NAME + ")";
+        synchronized (mContainerLock) {
+            mContainerVersion++;
+            mContainer = snapshot;
+        }
+    }
 
-        String[] selArgs = new String[] { "0" };
+    /**
+     * Remove the cached container if the given table is the container table.
+     */
+    private void invalidateContainer(String table) {
+        if (SecretSharingContract.Container.TABLE_NAME.equals(table)) {
+            synchronized (mContainerLock) {
+                mContainerVersion++;
+                mContainer = null;
+            }
+        }
+    }
 
-        Cursor cursor = mDatabase.rawQuery(sql, selArgs);
+    public KeyPartImpl[] getMyKeyParts() {
+        SQLiteDatabase db = acquire();
+        try {
+            Cursor cursor = db.rawQuery(myKeyPartsQuery("*"), new String[] { "0" });
+
+            KeyPartImpl[] keyParts = null;
+            if (cursor != null) {
+                keyParts = new KeyPartImpl[cursor.getCount()];
+                KeyPartImpl.Mapper mapper = new KeyPartImpl.Mapper(cursor);
 
-        KeyPartImpl[] keyParts = null;
-        if (cursor != null) {
-            keyParts = new KeyPartImpl[cursor.getCount()];
+                int i = 0;
+                while (cursor.moveToNext()) {
+                    keyParts[i++] = mapper.map(cursor);
+                }
 
-            int i = 0;
-            while (cursor.moveToNext()) {
-                keyParts[i++] = new KeyPartImpl(cursor);
+                cursor.close();
             }
+            return keyParts;
+        } finally {
+            release();
+        }
+    }
 
-            cursor.close();
+    /**
+     * Load key parts of the user that are not linked to a contact. The secret key parts are not loaded.
+     */
+    public KeyPartSummary[] getMyKeyPartSummaries() {
+        SQLiteDatabase db = acquire();
+        try {
+            Cursor cursor = db.rawQuery(myKeyPartsQuery(TextUtils.join(", ", KeyPartSummaryImpl.PROJECTION)), new String[] { "0" });
+
+            KeyPartSummary[] keyParts = null;
+            if (cursor != null) {
+                keyParts = new KeyPartSummary[cursor.getCount()];
+                KeyPartSummaryImpl.Mapper mapper = new KeyPartSummaryImpl.Mapper(cursor);
+
+                int i = 0;
+                while (cursor.moveToNext()) {
+                    keyParts[i++] = mapper.map(cursor);
+                }
+
+                cursor.close();
+            }
+            return keyParts;
+        } finally {
+            release();
         }
-        return keyParts;
+    }
+
+    /**
+     * Query of key parts of the user that are not linked to a contact. The selection argument is the foreign flag.
+     *
+     * @param columns Columns to select.
+     */
+    static String myKeyPartsQuery(String columns) {
+        // anti-join on the key part index of the contact table; contacts without a key part (NULL or -1) never match
+        return "SELECT " + columns + " FROM " + SecretSharingContract.KeyPart.TABLE_NAME + " WHERE " + SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN + "=? AND "
+                + "NOT EXISTS (SELECT 1 FROM " + SecretSharingContract.Contact.TABLE_NAME + " WHERE "
+                + SecretSharingContract.Contact.TABLE_NAME + "." + SecretSharingContract.Contact.COLUMN_KEY_PART_ID + "="
+                + SecretSharingContract.KeyPart.TABLE_NAME + "." + SecretSharingContract.KeyPart._ID + ")";
     }
 
     public long getContainerId() {
@@ -126,26 +311,63 @@ class DatabaseHelper {
         String selection = SecretSharingContract.Contact.COLUMN_SEND_STATUS + "=?";
         String[] selArgs = new String[] { String.valueOf(sendStatus.getId()) };
 
-        Cursor cursor = mDatabase.query(SecretSharingContract.Contact.TABLE_NAME, null, selection, selArgs, null, null, null);
+        SQLiteDatabase db = acquire();
+        try {
+            Cursor cursor = db.query(SecretSharingContract.Contact.TABLE_NAME, null, selection, selArgs, null, null, null);
 
-        ContactImpl[] contacts = null;
-        if (cursor != null) {
-            contacts = new ContactImpl[cursor.getCount()];
+            ContactImpl[] contacts = null;
+            if (cursor != null) {
+                contacts = new ContactImpl[cursor.getCount()];
+                ContactImpl.Mapper mapper = new ContactImpl.Mapper(cursor);
 
-            int i = 0;
-            while (cursor.moveToNext()) {
-                contacts[i++] = new ContactImpl(cursor);
+                int i = 0;
+                while (cursor.moveToNext()) {
+                    contacts[i++] = mapper.map(cursor);
+                }
+
+                cursor.close();
             }
+            return contacts;
+        } finally {
+            release();
+        }
+    }
 
-            cursor.close();
+    /**
+     * Query the contacts of a container sorted by name. The database stays open until the returned
+     * cursor is closed.
+     */
+    Cursor queryContacts(long containerId) {
+        String selection = SecretSharingContract.Contact.COLUMN_Container_ID + "=?";
+        String[] selArgs = new String[] { String.valueOf(containerId) };
+        String order = SecretSharingContract.Contact.COLUMN_NAME + " ASC, " + SecretSharingContract.Contact.COLUMN_CONTACT_ID + " ASC";
+
+        SQLiteDatabase db = acquire();
+        Cursor cursor;
+        try {
+            cursor = db.query(SecretSharingContract.Contact.TABLE_NAME, null, selection, selArgs, null, null, order);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
         }
-        return contacts;
+
+        return new CursorWrapper(cursor) {
+            private boolean mReleased;
+
+            @Override
+            public void close() {
+                super.close();
+
+                if (!mReleased) {
+                    mReleased = true;
+                    release();
+                }
+            }
+        };
     }
 
     public KeyPart[] saveKeyParts(ContainerImpl container, com.secure.key.backup.KeyPart[] keyParts) {
-        KeyPart[] parts = new KeyPart[keyParts.length];
-
-        mDatabase.beginTransaction();
+        KeyPartImpl[] parts = new KeyPartImpl[keyParts.length];
 
         int i = 0;
         for (com.secure.key.backup.KeyPart part : keyParts) {
@@ -153,30 +375,118 @@ class DatabaseHelper {
             keyPart.setContainerId(container.getId());
             keyPart.setOwner(mUserName);
 
-            long id = mDatabase.insert(SecretSharingContract.KeyPart.TABLE_NAME, null, keyPart.toValues());
-            keyPart.setId(id);
-
             parts[i++] = keyPart;
         }
 
-        mDatabase.setTransactionSuccessful();
-        mDatabase.endTransaction();
+        insertKeyParts(parts);
+        return parts;
+    }
+
+    /**
+     * Save key parts of other persons.
+     */
+    public KeyPartImpl[] saveForeignKeyParts(KeyPart[] keyParts) {
+        KeyPartImpl[] parts = new KeyPartImpl[keyParts.length];
+
+        for (int i = 0; i < keyParts.length; i++) {
+            KeyPartImpl keyPart = (KeyPartImpl) keyParts[i];
+            keyPart.setForeign(true);
+
+            if (keyPart.getContainerId() < 1) {
+                keyPart.setContainerId(getContainerId());
+            }
+
+            parts[i] = keyPart;
+        }
 
+        insertKeyParts(parts);
         return parts;
     }
 
+    /**
+     * Insert key parts in a single transaction. The insert statement is compiled once and bound
+     * again for every key part. The ids of the new rows are set on the key parts.
+     *
+     * @return Ids of the new rows in the order of the key parts. An id is -1 if the insert failed.
+     */
+    long[] insertKeyParts(KeyPartImpl[] keyParts) {
+        long[] ids = new long[keyParts.length];
+
+        SQLiteDatabase db = acquire();
+        try {
+            db.beginTransaction();
+            try {
+                SQLiteStatement statement = db.compileStatement(SecretSharingContract.KeyPart.INSERT);
+                try {
+                    for (int i = 0; i < keyParts.length; i++) {
+                        keyParts[i].bindInsert(statement);
+
+                        ids[i] = statement.executeInsert();
+                        keyParts[i].setId(ids[i]);
+                    }
+                } finally {
+                    statement.close();
+                }
+
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            release();
+        }
+
+        return ids;
+    }
+
     public KeyPartImpl loadKey(long keyId) {
-        String selection = SecretSharingContract.KeyPart._ID + "=?";
         String[] selArgs = new String[] { String.valueOf(keyId) };
 
-        Cursor cursor = mDatabase.query(SecretSharingContract.KeyPart.TABLE_NAME, null, selection, selArgs, null, null, null);
+        SQLiteDatabase db = acquire();
+        try {
+            Cursor cursor = db.query(SecretSharingContract.KeyPart.TABLE_NAME, null, SELECTION_KEY_PART_ID, selArgs, null, null, null);
+
+            KeyPartImpl key = null;
+            if (cursor != null) {
+                try {
+                    if (cursor.moveToNext()) {
+                        key = new KeyPartImpl.Mapper(cursor).map(cursor);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            return key;
+        } finally {
+            release();
+        }
+    }
 
-        KeyPartImpl key = null;
-        if (cursor != null && cursor.moveToNext()) {
-            key = new KeyPartImpl(cursor);
-            cursor.close();
+    /**
+     * Load a backup including its encrypted data.
+     */
+    public BackupImpl loadBackup(long backupId) {
+        String selection = SecretSharingContract.Backup._ID + "=?";
+        String[] selArgs = new String[] { String.valueOf(backupId) };
+
+        SQLiteDatabase db = acquire();
+        try {
+            Cursor cursor = db.query(SecretSharingContract.Backup.TABLE_NAME, null, selection, selArgs, null, null, null);
+
+            BackupImpl backup = null;
+            if (cursor != null) {
+                try {
+                    if (cursor.moveToNext()) {
+                        backup = new BackupImpl.Mapper(cursor).map(cursor);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            return backup;
+        } finally {
+            release();
         }
-        return key;
     }
 
     public String getUserName() {
@@ -197,38 +507,61 @@ class DatabaseHelper {
     }
 
     public long getContainerTimestamp() {
-        String columns[] = new String[] { SecretSharingContract.Container.COLUMN_TIMESTAMP };
+        ContainerImpl.Snapshot container = mContainer;
+        if (container != null) {
+            return container.getTimestamp();
+        }
 
-        Cursor cursor = mDatabase.query(SecretSharingContract.Container.TABLE_NAME, columns, null, null, null, null, null);
+        SQLiteDatabase db = acquire();
+        try {
+            return mStatementCache.queryForLong(db, SELECT_CONTAINER_TIMESTAMP, -1);
+        } finally {
+            release();
+        }
+    }
 
-        long timestamp = -1;
-        if (cursor != null) {
-            if (cursor.moveToNext()) {
-                timestamp = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.Container.COLUMN_TIMESTAMP));
-            }
-            cursor.close();
+    /**
+     * Get the minimum count of key parts needed to restore a backup of the container.
+     *
+     * @return The minimum count or 0 if no container was created yet.
+     */
+    public int getMinimumKeyParts() {
+        ContainerImpl.Snapshot container = mContainer;
+        if (container != null) {
+            return container.getMinimumRecoverParts();
         }
 
-        return timestamp;
+        SQLiteDatabase db = acquire();
+        try {
+            return (int) mStatementCache.queryForLong(db, SELECT_MINIMUM_KEY_PARTS, 0);
+        } finally {
+            release();
+        }
     }
 
     public Backup[] getBackups() {
         String order = SecretSharingContract.Backup.COLUMN_TIMESTAMP + " ASC";
 
-        Cursor cursor = mDatabase.query(SecretSharingContract.Backup.TABLE_NAME, null, null, null, null, null, order);
-        Backup[] backups = null;
-        if (cursor != null) {
-            backups = new BackupImpl[cursor.getCount()];
+        SQLiteDatabase db = acquire();
+        try {
+            Cursor cursor = db.query(SecretSharingContract.Backup.TABLE_NAME, null, null, null, null, null, order);
+            Backup[] backups = null;
+            if (cursor != null) {
+                backups = new BackupImpl[cursor.getCount()];
+                BackupImpl.Mapper mapper = new BackupImpl.Mapper(cursor);
 
-            int i = 0;
-            while (cursor.moveToNext()) {
-                backups[i++] = new BackupImpl(cursor);
+                int i = 0;
+                while (cursor.moveToNext()) {
+                    backups[i++] = mapper.map(cursor);
+                }
+
+                cursor.close();
             }
 
-            cursor.close();
+            return backups;
+        } finally {
+            release();
         }
-
-        return backups;
     }
 
     public KeyPart[] getForeignKeyParts() {
@@ -236,25 +569,179 @@ class DatabaseHelper {
         String selArgs[] = new String[] { "1" };
         String order = SecretSharingContract.KeyPart.COLUMN_OWNER + " ASC";
 
-        Cursor cursor = mDatabase.query(SecretSharingContract.KeyPart.TABLE_NAME, null, selection, selArgs, null, null, order);
+        SQLiteDatabase db = acquire();
+        try {
+            Cursor cursor = db.query(SecretSharingContract.KeyPart.TABLE_NAME, null, selection, selArgs, null, null, order);
 
-        KeyPart[] keyParts = null;
-        if (cursor != null) {
-            keyParts = new KeyPart[cursor.getCount()];
+            KeyPart[] keyParts = null;
+            if (cursor != null) {
+                keyParts = new KeyPart[cursor.getCount()];
+                KeyPartImpl.Mapper mapper = new KeyPartImpl.Mapper(cursor);
 
-            int i = 0;
-            while (cursor.moveToNext()) {
-                keyParts[i++] = new KeyPartImpl(cursor);
+                int i = 0;
+                while (cursor.moveToNext()) {
+                    keyParts[i++] = mapper.map(cursor);
+                }
+
+                cursor.close();
             }
 
-            cursor.close();
+            return keyParts;
+        } finally {
+            release();
         }
+    }
+
+    /**
+     * Load a page of foreign key parts sorted by owner. The secret key parts are not loaded.
+     *
+     * @param after     Last key part of the previous page. Null to load the first page.
+     * @param pageSize  Maximum count of key parts in the page.
+     */
+    public KeyPartSummary[] getForeignKeyParts(@Nullable KeyPartSummary after, int pageSize) {
+        return getForeignKeyPartSummaries(after, String.valueOf(pageSize));
+    }
 
-        return keyParts;
+    /**
+     * Load all foreign key parts sorted by owner. The secret key parts are not loaded.
+     */
+    public KeyPartSummary[] getForeignKeyPartSummaries() {
+        return getForeignKeyPartSummaries(null, null);
     }
 
+    private KeyPartSummary[] getForeignKeyPartSummaries(@Nullable KeyPartSummary after, @Nullable String limit) {
+        String selection = SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN + "=?";
+        List<String> selArgs = new ArrayList<>();
+        selArgs.add("1");
+
+        if (after != null) {
+            String id = String.valueOf(((KeyPartSummaryImpl) after).getId());
+            String owner = after.getOwner();
+
+            // continue behind the last key part of the previous page, NULL owners are sorted first
+            if (owner == null) {
+                selection += " AND (" + SecretSharingContract.KeyPart.COLUMN_OWNER + " IS NOT NULL OR "
+                        + SecretSharingContract.KeyPart._ID + ">?)";
+                selArgs.add(id);
+            } else {
+                selection += " AND (" + SecretSharingContract.KeyPart.COLUMN_OWNER + ">? OR ("
+                        + SecretSharingContract.KeyPart.COLUMN_OWNER + "=? AND " + SecretSharingContract.KeyPart._ID + ">?))";
+                selArgs.add(owner);
+                selArgs.add(owner);
+                selArgs.add(id);
+            }
+        }
+
+        String order = SecretSharingContract.KeyPart.COLUMN_OWNER + " ASC, " + SecretSharingContract.KeyPart._ID + " ASC";
+
+        SQLiteDatabase db = acquire();
+        try {
+            Cursor cursor = db.query(SecretSharingContract.KeyPart.TABLE_NAME, KeyPartSummaryImpl.PROJECTION, selection,
+                    selArgs.toArray(new String[selArgs.size()]), null, null, order, limit);
+
+            KeyPartSummary[] keyParts = null;
+            if (cursor != null) {
+                keyParts = new KeyPartSummary[cursor.getCount()];
+                KeyPartSummaryImpl.Mapper mapper = new KeyPartSummaryImpl.Mapper(cursor);
+
+                int i = 0;
+                while (cursor.moveToNext()) {
+                    keyParts[i++] = mapper.map(cursor);
+                }
+
+                cursor.close();
+            }
+
+            return keyParts;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Load a page of backups sorted by their creation time. The encrypted data is not loaded.
+     *
+     * @param after     Last backup of the previous page. Null to load the first page.
+     * @param pageSize  Maximum count of backups in the page.
+     */
+    public BackupSummary[] getBackups(@Nullable BackupSummary after, int pageSize) {
+        return getBackupSummaries(null, after, String.valueOf(pageSize));
+    }
+
+    /**
+     * Load all backups sorted by their creation time. The encrypted data is not loaded.
+     */
+    public BackupSummary[] getBackupSummaries() {
+        return getBackupSummaries(null, null, null);
+    }
+
+    /**
+     * Load a page of backups with stored encrypted data sorted by their creation time. The encrypted
+     * data is not loaded.
+     *
+     * @param after     Last backup of the previous page. Null to load the first page.
+     * @param pageSize  Maximum count of backups in the page.
+     */
+    public BackupSummary[] getAvailableBackups(@Nullable BackupSummary after, int pageSize) {
+        return getBackupSummaries(SecretSharingContract.Backup.COLUMN_DATA + " IS NOT NULL", after, String.valueOf(pageSize));
+    }
+
+    /**
+     * Load all backups with stored encrypted data sorted by their creation time. The encrypted data
+     * is not loaded.
+     */
+    public BackupSummary[] getAvailableBackupSummaries() {
+        return getBackupSummaries(SecretSharingContract.Backup.COLUMN_DATA + " IS NOT NULL", null, null);
+    }
+
+    private BackupSummary[] getBackupSummaries(@Nullable String selection, @Nullable BackupSummary after, @Nullable String limit) {
+        List<String> selArgs = new ArrayList<>();
+
+        if (after != null) {
+            String timestamp = String.valueOf(after.getTimestamp());
+
+            // continue behind the last backup of the previous page
+            String keyset = "(" + SecretSharingContract.Backup.COLUMN_TIMESTAMP + ">? OR ("
+                    + SecretSharingContract.Backup.COLUMN_TIMESTAMP + "=? AND " + SecretSharingContract.Backup._ID + ">?))";
+            selection = selection == null ? keyset : selection + " AND " + keyset;
+
+            selArgs.add(timestamp);
+            selArgs.add(timestamp);
+            selArgs.add(String.valueOf(((BackupSummaryImpl) after).getId()));
+        }
+
+        String order = SecretSharingContract.Backup.COLUMN_TIMESTAMP + " ASC, " + SecretSharingContract.Backup._ID + " ASC";
+
+        SQLiteDatabase db = acquire();
+        try {
+            Cursor cursor = db.query(SecretSharingContract.Backup.TABLE_NAME, BackupSummaryImpl.PROJECTION, selection,
+                    selArgs.toArray(new String[selArgs.size()]), null, null, order, limit);
+
+            BackupSummary[] backups = null;
+            if (cursor != null) {
+                backups = new BackupSummary[cursor.getCount()];
+                BackupSummaryImpl.Mapper mapper = new BackupSummaryImpl.Mapper(cursor);
+
+                int i = 0;
+                while (cursor.moveToNext()) {
+                    backups[i++] = mapper.map(cursor);
+                }
+
+                cursor.close();
+            }
+
+            return backups;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Stop sharing this helper. The database is closed as soon as all running operations are finished.
+     */
     public void close() {
-        mHelper = null;
-        mDatabase.close();
+        if (mHelper.compareAndSet(this, null)) {
+            release();
+        }
     }
 }
@@ -1,19 +1,41 @@
 package com.android.secret.sharing;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
 import com.android.secret.sharing.SecretSharingContract.Contact;
 import com.android.secret.sharing.SecretSharingContract.Container;
 import com.android.secret.sharing.SecretSharingContract.Backup;
 
 class DatabaseOpenHelper extends SQLiteOpenHelper {
-    public static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 4;
     public static final String DATABASE_NAME = "Secret Sharing.db";
 
     public DatabaseOpenHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            enableWriteAheadLogging();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void enableWriteAheadLogging() {
+        // readers do not block the writer and run in parallel on separate connections
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+
+        // write-ahead logging can only be configured on the open helper since API level 16
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly()) {
+            db.enableWriteAheadLogging();
+        }
     }
 
     @Override
@@ -22,10 +44,42 @@ class DatabaseOpenHelper extends SQLiteOpenHelper {
         db.execSQL(Backup.CREATE);
         db.execSQL(Contact.CREATE);
         db.execSQL(SecretSharingContract.KeyPart.CREATE);
+
+        // tables are created in the schema of version 1, later changes are applied by the migrations
+        onUpgrade(db, 1, DATABASE_VERSION);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            migrate(db, version);
+        }
+    }
 
+    /**
+     * Migrate the database from the previous version to the given version. Migrations must not
+     * drop data of existing installs.
+     *
+     * @param version Version the database is migrated to.
+     */
+    private void migrate(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 2:
+                db.execSQL(SecretSharingContract.KeyPart.CREATE_INDEX_FOREIGN_OWNER);
+                db.execSQL(Contact.CREATE_INDEX_SEND_STATUS);
+                db.execSQL(Contact.CREATE_INDEX_CONTAINER);
+                db.execSQL(Backup.CREATE_INDEX_TIMESTAMP);
+                break;
+            case 3:
+                db.execSQL(Contact.CREATE_INDEX_KEY_PART);
+                break;
+            case 4:
+                db.execSQL(SecretSharingContract.KeyPart.DELETE_FOREIGN_DUPLICATES);
+                db.execSQL(SecretSharingContract.KeyPart.CREATE_INDEX_FOREIGN_KEY_PART);
+                db.execSQL(SecretSharingContract.KeyPart.CREATE_TRIGGER_UNIQUE_FOREIGN);
+                break;
+            default:
+                throw new IllegalStateException("No migration defined for database version " + version);
+        }
     }
 }
@@ -0,0 +1,93 @@
+package com.android.secret.sharing;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Drops repeated detections of the same QR-Code. The camera reports a QR-Code in every frame it is
+ * visible, so a code that is held in front of the camera would be processed many times per second.
+ *
+ * Detections are compared by a hash of their content. A repeat is dropped as long as the same code
+ * was seen within the time window. Every repeat extends the window, so a code that stays in view is
+ * processed only once.
+ */
+class DetectionFilter {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final long DEFAULT_WINDOW_MILLIS = 3000;
+    private static final int MAXIMUM_ENTRIES = 16;
+
+    private final long mWindowMillis;
+    private final LinkedList<Entry> mEntries = new LinkedList<>();
+
+    private int mSuppressedCount;
+
+    private static class Entry {
+        final byte[] mHash;
+        long mLastSeen;
+
+        Entry(byte[] hash, long lastSeen) {
+            mHash = hash;
+            mLastSeen = lastSeen;
+        }
+    }
+
+    DetectionFilter(long windowMillis) {
+        mWindowMillis = windowMillis;
+    }
+
+    /**
+     * @param now Current time in milliseconds, e.g. from {@link android.os.SystemClock#elapsedRealtime()}.
+     * @return False if the same content was accepted or dropped within the time window.
+     */
+    synchronized boolean accept(String data, long now) {
+        byte[] hash = hash(data);
+
+        Iterator<Entry> iterator = mEntries.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+
+            if (now - entry.mLastSeen > mWindowMillis) {
+                iterator.remove();
+            } else if (Arrays.equals(entry.mHash, hash)) {
+                entry.mLastSeen = now;
+                mSuppressedCount++;
+                return false;
+            }
+        }
+
+        if (mEntries.size() == MAXIMUM_ENTRIES) {
+            mEntries.removeFirst();
+        }
+        mEntries.addLast(new Entry(hash, now));
+
+        return true;
+    }
+
+    /**
+     * Forget all seen codes, so every code is accepted again.
+     */
+    synchronized void reset() {
+        mEntries.clear();
+    }
+
+    /**
+     * @return Count of detections that were dropped.
+     */
+    synchronized int getSuppressedCount() {
+        return mSuppressedCount;
+    }
+
+    private static byte[] hash(String data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data.getBytes(UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // every Android device supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
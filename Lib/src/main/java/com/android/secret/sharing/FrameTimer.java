@@ -0,0 +1,68 @@
+package com.android.secret.sharing;
+
+import android.util.Log;
+
+/**
+ * Measures how long scanned QR-Codes are processed. Two times are recorded per detection: how long
+ * the camera detector thread was blocked and how long it took until the listener was notified.
+ * Averages and maximums are logged if debug logging is enabled for the tag, e.g. with
+ * {@code adb shell setprop log.tag.QrReader DEBUG}.
+ */
+class FrameTimer {
+    private static final int LOG_INTERVAL = 30;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final String mTag;
+
+    private int mDetectorCount;
+    private long mDetectorNanos;
+    private long mMaxDetectorNanos;
+
+    private int mPipelineCount;
+    private long mPipelineNanos;
+    private long mMaxPipelineNanos;
+
+    FrameTimer(String tag) {
+        mTag = tag;
+    }
+
+    /**
+     * @param startNanos Start of the detection from {@link System#nanoTime()}.
+     */
+    synchronized void detectorFinished(long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+
+        mDetectorCount++;
+        mDetectorNanos += nanos;
+        mMaxDetectorNanos = Math.max(mMaxDetectorNanos, nanos);
+    }
+
+    /**
+     * @param startNanos Start of the detection from {@link System#nanoTime()}.
+     */
+    synchronized void pipelineFinished(long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+
+        mPipelineCount++;
+        mPipelineNanos += nanos;
+        mMaxPipelineNanos = Math.max(mMaxPipelineNanos, nanos);
+
+        if (mPipelineCount % LOG_INTERVAL == 0 || mPipelineCount == 1) {
+            log();
+        }
+    }
+
+    private void log() {
+        if (!Log.isLoggable(mTag, Log.DEBUG)) {
+            return;
+        }
+
+        Log.d(mTag, String.format("detector thread: %d frames, avg %.2f ms, max %.2f ms; until callback: %d frames, avg %.2f ms, max %.2f ms",
+                mDetectorCount, average(mDetectorNanos, mDetectorCount), mMaxDetectorNanos / NANOS_PER_MILLI,
+                mPipelineCount, average(mPipelineNanos, mPipelineCount), mMaxPipelineNanos / NANOS_PER_MILLI));
+    }
+
+    private static double average(long nanos, int count) {
+        return count == 0 ? 0 : nanos / NANOS_PER_MILLI / count;
+    }
+}
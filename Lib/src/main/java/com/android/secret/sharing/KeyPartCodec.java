@@ -0,0 +1,202 @@
+package com.android.secret.sharing;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Converts key parts to the text of a QR-Code and back.
+ *
+ * The compact format is a binary record in Base45 so that the QR-Code can use the alphanumeric
+ * mode. The record starts with a magic byte and the format version followed by the timestamp, the
+ * minimum count of key parts and the owner as unsigned varints (the owner as length + 1, 0 means no
+ * owner, followed by its UTF-8 bytes) and the key part as length followed by its raw bytes.
+ *
+ * Older versions of this library encoded key parts as JSON which can still be decoded.
+ */
+final class KeyPartCodec {
+    private static final int MAGIC = 0x53;
+    private static final int VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String BASE45_CHARSET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+
+    // Gson is thread-safe, the adapter avoids reflection
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(KeyPartImpl.class, new KeyPartJsonAdapter())
+            .create();
+
+    private KeyPartCodec() {
+    }
+
+    /**
+     * Encode a key part in the compact format.
+     */
+    static String encode(byte[] key, long timestamp, String owner, int minimumKeyParts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(key.length + 32);
+
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeVarint(out, timestamp);
+        writeVarint(out, minimumKeyParts);
+
+        if (owner == null) {
+            writeVarint(out, 0);
+        } else {
+            byte[] ownerBytes = owner.getBytes(UTF_8);
+            writeVarint(out, ownerBytes.length + 1);
+            out.write(ownerBytes, 0, ownerBytes.length);
+        }
+
+        writeVarint(out, key.length);
+        out.write(key, 0, key.length);
+
+        return encodeBase45(out.toByteArray());
+    }
+
+    /**
+     * Decode a key part of the compact format or the JSON format of older versions.
+     *
+     * @throws IllegalArgumentException If the text is not an encoded key part.
+     */
+    static KeyPartImpl decode(String text) {
+        if (text.startsWith("{")) {
+            return decodeJson(text);
+        }
+
+        byte[] data = decodeBase45(text);
+        int[] position = new int[] { 0 };
+
+        if (data.length < 2 || (data[0] & 0xFF) != MAGIC) {
+            throw new IllegalArgumentException("Text is not an encoded key part");
+        }
+        if ((data[1] & 0xFF) != VERSION) {
+            throw new IllegalArgumentException("Unsupported key part format version " + (data[1] & 0xFF));
+        }
+        position[0] = 2;
+
+        long timestamp = readVarint(data, position);
+        int minimumKeyParts = (int) readVarint(data, position);
+
+        String owner = null;
+        int ownerLength = (int) readVarint(data, position);
+        if (ownerLength > 0) {
+            owner = new String(readBytes(data, position, ownerLength - 1), UTF_8);
+        }
+
+        int keyLength = (int) readVarint(data, position);
+        byte[] key = readBytes(data, position, keyLength);
+
+        return new KeyPartImpl(key, timestamp, owner, minimumKeyParts);
+    }
+
+    private static KeyPartImpl decodeJson(String text) {
+        KeyPartImpl keyPart;
+        try {
+            keyPart = GSON.fromJson(text, KeyPartImpl.class);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Text is not an encoded key part", e);
+        }
+
+        if (keyPart == null || keyPart.getEncoded() == null) {
+            throw new IllegalArgumentException("Text is not an encoded key part");
+        }
+        return keyPart;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] data, int[] position) {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= data.length) {
+                throw new IllegalArgumentException("Encoded key part is truncated");
+            }
+
+            int b = data[position[0]++] & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("Malformed varint in encoded key part");
+    }
+
+    private static byte[] readBytes(byte[] data, int[] position, int length) {
+        if (length < 0 || length > data.length - position[0]) {
+            throw new IllegalArgumentException("Encoded key part is truncated");
+        }
+
+        byte[] bytes = new byte[length];
+        System.arraycopy(data, position[0], bytes, 0, length);
+        position[0] += length;
+
+        return bytes;
+    }
+
+    static String encodeBase45(byte[] data) {
+        StringBuilder text = new StringBuilder((data.length / 2) * 3 + 2);
+
+        for (int i = 0; i < data.length; i += 2) {
+            if (i + 1 < data.length) {
+                int value = ((data[i] & 0xFF) << 8) | (data[i + 1] & 0xFF);
+                text.append(BASE45_CHARSET.charAt(value % 45));
+                text.append(BASE45_CHARSET.charAt((value / 45) % 45));
+                text.append(BASE45_CHARSET.charAt(value / 2025));
+            } else {
+                int value = data[i] & 0xFF;
+                text.append(BASE45_CHARSET.charAt(value % 45));
+                text.append(BASE45_CHARSET.charAt(value / 45));
+            }
+        }
+
+        return text.toString();
+    }
+
+    static byte[] decodeBase45(String text) {
+        if (text.length() % 3 == 1) {
+            throw new IllegalArgumentException("Invalid Base45 length " + text.length());
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream((text.length() / 3) * 2 + 1);
+
+        for (int i = 0; i < text.length(); i += 3) {
+            if (i + 2 < text.length()) {
+                int value = base45Value(text.charAt(i)) + base45Value(text.charAt(i + 1)) * 45 + base45Value(text.charAt(i + 2)) * 2025;
+                if (value > 0xFFFF) {
+                    throw new IllegalArgumentException("Invalid Base45 group at " + i);
+                }
+                out.write(value >> 8);
+                out.write(value & 0xFF);
+            } else {
+                int value = base45Value(text.charAt(i)) + base45Value(text.charAt(i + 1)) * 45;
+                if (value > 0xFF) {
+                    throw new IllegalArgumentException("Invalid Base45 group at " + i);
+                }
+                out.write(value);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    private static int base45Value(char c) {
+        int value = BASE45_CHARSET.indexOf(c);
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid Base45 character " + c);
+        }
+        return value;
+    }
+}
@@ -4,11 +4,10 @@ package com.android.secret.sharing;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.os.Parcel;
 import android.os.Parcelable;
 
-import com.google.gson.Gson;
 import com.secure.key.backup.KeyPartImp;
 
 import java.io.UnsupportedEncodingException;
@@ -26,13 +25,20 @@ class KeyPartImpl extends KeyPartImp implements KeyPart {
         mIsForeign = partImp.isForeign();
     }
 
-    public KeyPartImpl(Cursor cursor) {
-        mId = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.KeyPart._ID));
-        mKey = cursor.getBlob(cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_KEY_PART));
-        mContainerId = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_Container_ID));
-        mTimestamp = cursor.getLong(cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_TIMESTAMP));
-        mOwner = cursor.getString(cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_OWNER));
-        mIsForeign = cursor.getInt(cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN)) == 1;
+    KeyPartImpl(byte[] key, long timestamp, String owner, int minimumKeyParts) {
+        mKey = key;
+        mTimestamp = timestamp;
+        mOwner = owner;
+        mMinimumKeyParts = minimumKeyParts;
+    }
+
+    private KeyPartImpl(Cursor cursor, Mapper mapper) {
+        mId = cursor.getLong(mapper.mIdIndex);
+        mKey = cursor.getBlob(mapper.mKeyIndex);
+        mContainerId = cursor.getLong(mapper.mContainerIdIndex);
+        mTimestamp = cursor.getLong(mapper.mTimestampIndex);
+        mOwner = cursor.getString(mapper.mOwnerIndex);
+        mIsForeign = cursor.getInt(mapper.mIsForeignIndex) == 1;
     }
 
     void setId(long id) {
@@ -65,6 +71,26 @@ class KeyPartImpl extends KeyPartImp implements KeyPart {
         return values;
     }
 
+    /**
+     * Bind the values of this key part to a statement compiled from {@link SecretSharingContract.KeyPart#INSERT}.
+     */
+    void bindInsert(SQLiteStatement statement) {
+        mTimestamp = mTimestamp == 0 ? System.currentTimeMillis() : mTimestamp;
+
+        statement.clearBindings();
+        statement.bindBlob(1, mKey);
+        statement.bindLong(2, mTimestamp);
+        statement.bindLong(3, mContainerId);
+
+        if (mOwner != null) {
+            statement.bindString(4, mOwner);
+        } else {
+            statement.bindNull(4);
+        }
+
+        statement.bindLong(5, mIsForeign ? 1 : 0);
+    }
+
     @Override
     public String getOwner() {
         return mOwner;
@@ -83,7 +109,8 @@ class KeyPartImpl extends KeyPartImp implements KeyPart {
             mContainerId = helper.getContainerId();
         }
 
-        helper.save(SecretSharingContract.KeyPart.TABLE_NAME, toValues());
+        // -1 if the insert failed or a foreign key part with the same content is already saved
+        mId = helper.save(SecretSharingContract.KeyPart.TABLE_NAME, toValues());
     }
 
     @Override
@@ -91,8 +118,7 @@ class KeyPartImpl extends KeyPartImp implements KeyPart {
         String where = SecretSharingContract.KeyPart._ID + "=?";
         String[] whereArgs = new String[] { String.valueOf(mId) };
 
-        SQLiteDatabase db = DatabaseHelper.getHelper(context).getDatabase();
-        db.delete(SecretSharingContract.KeyPart.TABLE_NAME, where, whereArgs);
+        DatabaseHelper.getHelper(context).delete(SecretSharingContract.KeyPart.TABLE_NAME, where, whereArgs);
     }
 
     @Override
@@ -103,21 +129,28 @@ class KeyPartImpl extends KeyPartImp implements KeyPart {
     @Override
     public int getMinimumKeyParts(Context context) {
         if (mMinimumKeyParts < 1) {
-            mMinimumKeyParts = DatabaseHelper.getHelper(context).getContainer().getMinimumRecoverParts();
+            mMinimumKeyParts = DatabaseHelper.getHelper(context).getMinimumKeyParts();
         }
 
         return mMinimumKeyParts;
     }
 
+    /**
+     * Minimum count of key parts that was sent with this key part. 0 if it was not set.
+     */
+    int getSentMinimumKeyParts() {
+        return mMinimumKeyParts;
+    }
+
     void setOwner(String owner) {
         mOwner = owner;
     }
 
     String encode(Context context) {
         if (mMinimumKeyParts < 1) {
-            mMinimumKeyParts = DatabaseHelper.getHelper(context).getContainer().getMinimumRecoverParts();
+            mMinimumKeyParts = DatabaseHelper.getHelper(context).getMinimumKeyParts();
         }
-        return new Gson().toJson(this);
+        return KeyPartCodec.encode(mKey, mTimestamp, mOwner, mMinimumKeyParts);
     }
 
     @Override
@@ -146,6 +179,32 @@ class KeyPartImpl extends KeyPartImp implements KeyPart {
         mMinimumKeyParts = in.readInt();
     }
 
+    /**
+     * Maps rows of the key part table.
+     */
+    static class Mapper implements RowMapper<KeyPartImpl> {
+        private final int mIdIndex;
+        private final int mKeyIndex;
+        private final int mContainerIdIndex;
+        private final int mTimestampIndex;
+        private final int mOwnerIndex;
+        private final int mIsForeignIndex;
+
+        Mapper(Cursor cursor) {
+            mIdIndex = cursor.getColumnIndex(SecretSharingContract.KeyPart._ID);
+            mKeyIndex = cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_KEY_PART);
+            mContainerIdIndex = cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_Container_ID);
+            mTimestampIndex = cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_TIMESTAMP);
+            mOwnerIndex = cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_OWNER);
+            mIsForeignIndex = cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN);
+        }
+
+        @Override
+        public KeyPartImpl map(Cursor cursor) {
+            return new KeyPartImpl(cursor, this);
+        }
+    }
+
     public static final Parcelable.Creator<KeyPartImpl> CREATOR = new Parcelable.Creator<KeyPartImpl>() {
         @Override
         public KeyPartImpl createFromParcel(Parcel source) {
@@ -0,0 +1,99 @@
+package com.android.secret.sharing;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Reads and writes key parts in the JSON format of older versions of this library without reflection.
+ * Only the fields that are needed by the receiver of a key part are written.
+ */
+class KeyPartJsonAdapter extends TypeAdapter<KeyPartImpl> {
+    private static final String FIELD_KEY = "mKey";
+    private static final String FIELD_TIMESTAMP = "mTimestamp";
+    private static final String FIELD_OWNER = "mOwner";
+    private static final String FIELD_MINIMUM_KEY_PARTS = "mMinimumKeyParts";
+
+    @Override
+    public void write(JsonWriter out, KeyPartImpl keyPart) throws IOException {
+        if (keyPart == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+
+        out.name(FIELD_KEY).beginArray();
+        for (byte b : keyPart.getEncoded()) {
+            out.value(b);
+        }
+        out.endArray();
+
+        out.name(FIELD_TIMESTAMP).value(keyPart.getTimestamp());
+        out.name(FIELD_OWNER).value(keyPart.getOwner());
+        out.name(FIELD_MINIMUM_KEY_PARTS).value(keyPart.getSentMinimumKeyParts());
+
+        out.endObject();
+    }
+
+    @Override
+    public KeyPartImpl read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        byte[] key = null;
+        long timestamp = 0;
+        String owner = null;
+        int minimumKeyParts = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+
+            switch (name) {
+                case FIELD_KEY:
+                    key = readBytes(in);
+                    break;
+                case FIELD_TIMESTAMP:
+                    timestamp = in.nextLong();
+                    break;
+                case FIELD_OWNER:
+                    owner = in.nextString();
+                    break;
+                case FIELD_MINIMUM_KEY_PARTS:
+                    minimumKeyParts = in.nextInt();
+                    break;
+                default:
+                    // internal fields written by older versions, e.g. ids of the database of the sender
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+
+        return new KeyPartImpl(key, timestamp, owner, minimumKeyParts);
+    }
+
+    private static byte[] readBytes(JsonReader in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            bytes.write(in.nextInt());
+        }
+        in.endArray();
+
+        return bytes.toByteArray();
+    }
+}
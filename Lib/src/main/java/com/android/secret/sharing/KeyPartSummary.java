@@ -0,0 +1,27 @@
+package com.android.secret.sharing;
+
+import android.content.Context;
+
+/**
+ * Metadata of a saved {@link KeyPart}. The secret key part itself is not loaded until
+ * {@link #load(Context)} is called.
+ */
+public interface KeyPartSummary extends SecretPresentation {
+
+    /**
+     * Get the name of the owner of the key part.
+     */
+    String getOwner();
+
+    /**
+     * True if the key part belongs to another person.
+     */
+    boolean isForeign();
+
+    /**
+     * Load the complete key part from the database of this library.
+     *
+     * @return The key part or null if it was deleted in the meantime.
+     */
+    KeyPart load(Context context);
+}
@@ -0,0 +1,77 @@
+package com.android.secret.sharing;
+
+import android.content.Context;
+import android.database.Cursor;
+
+class KeyPartSummaryImpl implements KeyPartSummary {
+    // all columns except the key part itself
+    static final String[] PROJECTION = new String[] {
+            SecretSharingContract.KeyPart._ID,
+            SecretSharingContract.KeyPart.COLUMN_OWNER,
+            SecretSharingContract.KeyPart.COLUMN_TIMESTAMP,
+            SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN
+    };
+
+    private long mId;
+    private String mOwner;
+    private long mTimestamp;
+    private boolean mIsForeign;
+
+    private KeyPartSummaryImpl(Cursor cursor, Mapper mapper) {
+        mId = cursor.getLong(mapper.mIdIndex);
+        mOwner = cursor.getString(mapper.mOwnerIndex);
+        mTimestamp = cursor.getLong(mapper.mTimestampIndex);
+        mIsForeign = cursor.getInt(mapper.mIsForeignIndex) == 1;
+    }
+
+    long getId() {
+        return mId;
+    }
+
+    @Override
+    public String getOwner() {
+        return mOwner;
+    }
+
+    @Override
+    public String getName() {
+        return mOwner;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    @Override
+    public boolean isForeign() {
+        return mIsForeign;
+    }
+
+    @Override
+    public KeyPart load(Context context) {
+        return DatabaseHelper.getHelper(context).loadKey(mId);
+    }
+
+    /**
+     * Maps rows of the key part table queried with {@link #PROJECTION}.
+     */
+    static class Mapper implements RowMapper<KeyPartSummaryImpl> {
+        private final int mIdIndex;
+        private final int mOwnerIndex;
+        private final int mTimestampIndex;
+        private final int mIsForeignIndex;
+
+        Mapper(Cursor cursor) {
+            mIdIndex = cursor.getColumnIndex(SecretSharingContract.KeyPart._ID);
+            mOwnerIndex = cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_OWNER);
+            mTimestampIndex = cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_TIMESTAMP);
+            mIsForeignIndex = cursor.getColumnIndex(SecretSharingContract.KeyPart.COLUMN_IS_FOREIGN);
+        }
+
+        @Override
+        public KeyPartSummaryImpl map(Cursor cursor) {
+            return new KeyPartSummaryImpl(cursor, this);
+        }
+    }
+}
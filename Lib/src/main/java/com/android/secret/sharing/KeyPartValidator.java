@@ -0,0 +1,80 @@
+package com.android.secret.sharing;
+
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+/**
+ * Checks whether a scanned text is a key part that belongs to the user or, for foreign key parts,
+ * to another person. Decoding and all checks run without touching the UI, so this can be used on
+ * any thread.
+ */
+class KeyPartValidator {
+    private final DatabaseHelper mDbHelper;
+    private final boolean mForeignKey;
+    private final long mTimestamp;
+
+    private volatile boolean mIgnoreKeyPartOrigin; // ignore timestamp and name of scanned secret. Used to restore backup from another device
+
+    /**
+     * @param foreignKey True if key parts of other persons are expected.
+     */
+    KeyPartValidator(DatabaseHelper dbHelper, boolean foreignKey) {
+        mDbHelper = dbHelper;
+        mForeignKey = foreignKey;
+        mTimestamp = dbHelper.getContainerTimestamp();
+    }
+
+    void setIgnoreKeyPartOrigin(boolean ignoreOrigin) {
+        mIgnoreKeyPartOrigin = ignoreOrigin;
+    }
+
+    /**
+     * @return True if key parts are accepted regardless of their owner and timestamp. Such key parts
+     * are not stored.
+     */
+    boolean isIgnoringKeyPartOrigin() {
+        return mIgnoreKeyPartOrigin;
+    }
+
+    /**
+     * Decode and check a scanned text.
+     *
+     * @return Decoded key part or null if the text is no key part or the key part is not expected.
+     */
+    @Nullable
+    KeyPartImpl validate(String data) {
+        KeyPartImpl keyPart;
+        try {
+            keyPart = KeyPartCodec.decode(data);
+        } catch (IllegalArgumentException e) {
+            // user should scan a secret part but did scan something else
+            return null;
+        }
+
+        if (mIgnoreKeyPartOrigin) {
+            return keyPart;
+        }
+
+        String userName = mDbHelper.getUserName();
+        String secretPartUserName = keyPart.getOwner();
+        boolean nonEmptyNames = !TextUtils.isEmpty(userName) && !TextUtils.isEmpty(secretPartUserName);
+
+        if (mForeignKey) {
+            if (nonEmptyNames) {
+                if (userName.equals(secretPartUserName)) {
+                    // user tries to store key part from himself as a foreign key
+                    return null;
+                }
+            }
+            keyPart.setForeign(true);
+        } else {
+            if (keyPart.getTimestamp() != mTimestamp || (nonEmptyNames && !userName.equals(secretPartUserName))) {
+                // secret part of other person or secret part of other backup of this person
+                return null;
+            }
+            keyPart.setForeign(false);
+        }
+
+        return keyPart;
+    }
+}
@@ -0,0 +1,18 @@
+package com.android.secret.sharing;
+
+import github.nisrulz.qreader.QRDataListener;
+
+/**
+ * Receives data that is scanned with {@link AndroidSecretSharing#readQrCode}. Data that was split
+ * into multiple QR-Codes is joined before {@link #onDetected(String)} is called.
+ */
+public interface QrChunkListener extends QRDataListener {
+
+    /**
+     * A QR-Code that contains a part of the data was scanned.
+     *
+     * @param received  Count of different parts scanned so far.
+     * @param total     Count of all parts of the data.
+     */
+    void chunkDetected(int received, int total);
+}
@@ -0,0 +1,172 @@
+package com.android.secret.sharing;
+
+import android.support.annotation.Nullable;
+
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * Splits texts that are too large for a single QR-Code into multiple QR-Codes and joins them again.
+ *
+ * Every chunk starts with a header {@code SKC:<index>/<count>:<checksum>:} where the index starts
+ * at 1 and the checksum is the CRC32 of the complete text in hex. Chunks can be scanned in any order.
+ */
+final class QrChunks {
+    private static final String PREFIX = "SKC:";
+
+    // enough space for prefix, index, count and checksum
+    private static final int MAXIMUM_HEADER_LENGTH = 32;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private QrChunks() {
+    }
+
+    /**
+     * Split a text into chunks that fit into QR-Codes of the given size. A text that fits into a
+     * single QR-Code is returned without a header.
+     *
+     * @param maximumLength Maximum text length of a single QR-Code.
+     */
+    static String[] split(String text, int maximumLength) {
+        if (text.length() <= maximumLength) {
+            return new String[] { text };
+        }
+
+        int maximumChunkLength = maximumLength - MAXIMUM_HEADER_LENGTH;
+        int count = (text.length() + maximumChunkLength - 1) / maximumChunkLength;
+
+        // equally sized chunks so that all QR-Codes have a similar density
+        int chunkLength = (text.length() + count - 1) / count;
+        String checksum = checksum(text);
+
+        String[] chunks = new String[count];
+        for (int i = 0; i < count; i++) {
+            int start = i * chunkLength;
+            int end = Math.min(start + chunkLength, text.length());
+
+            chunks[i] = PREFIX + (i + 1) + "/" + count + ":" + checksum + ":" + text.substring(start, end);
+        }
+
+        return chunks;
+    }
+
+    /**
+     * @return True if the text is a chunk created by {@link #split(String, int)}.
+     */
+    static boolean isChunk(String text) {
+        return text.startsWith(PREFIX);
+    }
+
+    private static String checksum(String text) {
+        CRC32 crc = new CRC32();
+        crc.update(text.getBytes(UTF_8));
+
+        return String.format("%08x", crc.getValue());
+    }
+
+    /**
+     * Collects scanned chunks of a text.
+     */
+    static class Assembler {
+        private String[] mChunks;
+        private String mChecksum;
+        private int mReceivedCount;
+
+        /**
+         * Add a scanned chunk. Chunks of another text replace the chunks collected so far.
+         *
+         * @return True if the chunk was not received before.
+         * @throws IllegalArgumentException If the text is not a valid chunk.
+         */
+        boolean add(String text) {
+            if (!isChunk(text)) {
+                throw new IllegalArgumentException("Text is not a QR-Code chunk");
+            }
+
+            int indexEnd = text.indexOf('/', PREFIX.length());
+            int countEnd = indexEnd < 0 ? -1 : text.indexOf(':', indexEnd);
+            int checksumEnd = countEnd < 0 ? -1 : text.indexOf(':', countEnd + 1);
+
+            if (checksumEnd < 0) {
+                throw new IllegalArgumentException("Malformed QR-Code chunk header");
+            }
+
+            int index;
+            int count;
+            try {
+                index = Integer.parseInt(text.substring(PREFIX.length(), indexEnd));
+                count = Integer.parseInt(text.substring(indexEnd + 1, countEnd));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed QR-Code chunk header", e);
+            }
+
+            if (count < 1 || index < 1 || index > count) {
+                throw new IllegalArgumentException("Invalid QR-Code chunk " + index + " of " + count);
+            }
+
+            String checksum = text.substring(countEnd + 1, checksumEnd);
+
+            if (mChunks == null || mChunks.length != count || !checksum.equals(mChecksum)) {
+                // first chunk or chunk of another text
+                mChunks = new String[count];
+                mChecksum = checksum;
+                mReceivedCount = 0;
+            }
+
+            if (mChunks[index - 1] != null) {
+                return false;
+            }
+
+            mChunks[index - 1] = text.substring(checksumEnd + 1);
+            mReceivedCount++;
+            return true;
+        }
+
+        int getReceivedCount() {
+            return mReceivedCount;
+        }
+
+        /**
+         * @return Count of chunks of the text or 0 if no chunk was received yet.
+         */
+        int getTotalCount() {
+            return mChunks == null ? 0 : mChunks.length;
+        }
+
+        boolean isComplete() {
+            return mChunks != null && mReceivedCount == mChunks.length;
+        }
+
+        /**
+         * Join the received chunks. The collected chunks are discarded if the checksum does not match.
+         *
+         * @return The complete text or null if chunks are missing or the checksum does not match.
+         */
+        @Nullable
+        String getText() {
+            if (!isComplete()) {
+                return null;
+            }
+
+            StringBuilder text = new StringBuilder();
+            for (String chunk : mChunks) {
+                text.append(chunk);
+            }
+
+            String result = text.toString();
+            if (!checksum(result).equals(mChecksum)) {
+                reset();
+                return null;
+            }
+
+            return result;
+        }
+
+        void reset() {
+            mChunks = null;
+            mChecksum = null;
+            mReceivedCount = 0;
+        }
+    }
+}
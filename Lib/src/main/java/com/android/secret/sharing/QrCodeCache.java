@@ -0,0 +1,179 @@
+package com.android.secret.sharing;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+/**
+ * Least recently used cache of rendered QR-Codes. Showing the same QR-Code again, e.g. after the
+ * screen was rotated, does not render it again.
+ *
+ * Entries are keyed by a hash of the QR-Code text and the size, so secrets are not kept as keys.
+ * The cache is limited by the byte size of its bitmaps and shrinks when memory gets low. Bitmaps
+ * are only wiped on {@link #close()} since evicted bitmaps may still be displayed.
+ */
+class QrCodeCache {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final int MAXIMUM_MEMORY_FRACTION = 16;
+
+    private static QrCodeCache mCache;
+
+    private final Context mContext;
+    private final LruCache<String, Bitmap> mBitmaps;
+    private ComponentCallbacks mMemoryCallbacks;
+    private boolean mClosed;
+
+    /**
+     * Get the cache of this app. It is created on first access.
+     */
+    static synchronized QrCodeCache getCache(Context context) {
+        if (mCache == null) {
+            mCache = new QrCodeCache(context.getApplicationContext());
+        }
+        return mCache;
+    }
+
+    /**
+     * Close the cache of this app if it was created. Unlike {@link #getCache(Context)} this does
+     * not create a cache only to close it.
+     */
+    static synchronized void closeIfCreated() {
+        if (mCache != null) {
+            mCache.close();
+        }
+    }
+
+    private QrCodeCache(Context context) {
+        mContext = context;
+
+        int maximumSize = (int) Math.min(Runtime.getRuntime().maxMemory() / MAXIMUM_MEMORY_FRACTION, Integer.MAX_VALUE);
+        mBitmaps = new LruCache<String, Bitmap>(maximumSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+        };
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            registerMemoryCallbacks();
+        }
+    }
+
+    /**
+     * Get a cached QR-Code or render and cache it. QR-Codes rendered after {@link #close()} are not
+     * cached.
+     *
+     * @throws QrCodeSizeException If the text does not fit into a QR-Code.
+     */
+    Bitmap getQrCode(String qrText, int width, int height) throws QrCodeSizeException {
+        String key = key(qrText, width, height);
+        Bitmap qrCode = mBitmaps.get(key);
+
+        if (qrCode == null) {
+            qrCode = QrCodeRenderer.toBitmap(QrCodeRenderer.encode(qrText), width, height);
+
+            synchronized (this) {
+                if (!mClosed) {
+                    mBitmaps.put(key, qrCode);
+                }
+            }
+        }
+
+        return qrCode;
+    }
+
+    /**
+     * Remove all QR-Codes and overwrite their pixels if possible. Bitmaps returned by this cache must
+     * not be used afterwards.
+     */
+    void close() {
+        synchronized (QrCodeCache.class) {
+            if (mCache == this) {
+                mCache = null;
+            }
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            unregisterMemoryCallbacks();
+        }
+
+        synchronized (this) {
+            // render tasks that finish later must not fill the erased cache again
+            mClosed = true;
+        }
+
+        for (Map.Entry<String, Bitmap> entry : mBitmaps.snapshot().entrySet()) {
+            Bitmap qrCode = entry.getValue();
+
+            if (qrCode.isMutable() && !qrCode.isRecycled()) {
+                qrCode.eraseColor(Color.WHITE);
+            }
+        }
+        mBitmaps.evictAll();
+    }
+
+    private void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            mBitmaps.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            mBitmaps.trimToSize(mBitmaps.size() / 2);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void registerMemoryCallbacks() {
+        mMemoryCallbacks = new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                mBitmaps.evictAll();
+            }
+        };
+        mContext.registerComponentCallbacks(mMemoryCallbacks);
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void unregisterMemoryCallbacks() {
+        mContext.unregisterComponentCallbacks(mMemoryCallbacks);
+    }
+
+    private static String key(String qrText, int width, int height) {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(qrText.getBytes(UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // every Android device supports SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        StringBuilder key = new StringBuilder(hash.length * 2 + 12);
+        for (byte b : hash) {
+            key.append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+        }
+
+        return key.append(':').append(width).append('x').append(height).toString();
+    }
+}
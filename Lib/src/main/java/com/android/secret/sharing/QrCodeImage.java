@@ -0,0 +1,16 @@
+package com.android.secret.sharing;
+
+import android.graphics.Canvas;
+
+/**
+ * A QR-Code that can be drawn on a canvas. Implementations are created by {@link QrCodeRenderer}.
+ */
+interface QrCodeImage {
+
+    /**
+     * Draw the QR-Code into a square.
+     *
+     * @param size Edge length of the square.
+     */
+    void draw(Canvas canvas, float left, float top, float size);
+}
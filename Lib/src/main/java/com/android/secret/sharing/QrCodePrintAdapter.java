@@ -3,7 +3,6 @@ package com.android.secret.sharing;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.Resources;
-import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -20,93 +19,188 @@ import android.print.PrintDocumentInfo;
 import android.print.pdf.PrintedPdfDocument;
 
 import com.android.share.sharing.R;
+import com.google.zxing.common.BitMatrix;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Uses the print functions of the android system. API level must be greater than 19.
+ *
+ * Every QR-Code is printed on its own page, so key parts of many contacts and all parts of large
+ * backups can be printed in one job. Pages are only drawn when the print framework requests them.
  */
 @TargetApi(Build.VERSION_CODES.KITKAT)
 class QrCodePrintAdapter extends PrintDocumentAdapter {
-    private PrintedPdfDocument mPdfDocument;
+    // units are in points (1/72 of an inch)
+    static final int QR_CODE_SIZE = 400;
+
     private Context mContext;
-    private String mName;
-    private Bitmap mQrCode;
-    private boolean mDrawBackup;
+    private String mDocumentName;
+    private Page[] mPages;
+    private boolean mVector;
+    private PrintAttributes mAttributes;
+
+    /**
+     * Content of one printed page.
+     */
+    static class Page {
+        private final String mName;
+        private final String mQrText;
+        private final boolean mBackup;
+        private final int mPart;
+        private final int mPartCount;
+
+        private Page(String name, String qrText, boolean backup, int part, int partCount) {
+            mName = name;
+            mQrText = qrText;
+            mBackup = backup;
+            mPart = part;
+            mPartCount = partCount;
+        }
+
+        /**
+         * @param contactName Name of the contact who receives the key part.
+         */
+        static Page keyPart(String contactName, String qrText) {
+            return new Page(contactName, qrText, false, 1, 1);
+        }
+
+        /**
+         * @param qrTexts Parts of a backup that was split into multiple QR-Codes.
+         */
+        static Page[] backup(String name, String[] qrTexts) {
+            Page[] pages = new Page[qrTexts.length];
+
+            for (int i = 0; i < qrTexts.length; i++) {
+                pages[i] = new Page(name, qrTexts[i], true, i + 1, qrTexts.length);
+            }
+
+            return pages;
+        }
+    }
 
-    public QrCodePrintAdapter(Context context, String name, Bitmap qrCode, boolean drawBackup) {
+    /**
+     * @param documentName  Name of the PDF document without file extension.
+     * @param pages         Pages that will be printed.
+     * @param vector        True to draw QR-Codes as vector paths, false to embed them as images.
+     */
+    public QrCodePrintAdapter(Context context, String documentName, Page[] pages, boolean vector) {
         mContext = context;
-        mName = name;
-        mQrCode = qrCode;
-        mDrawBackup = drawBackup;
+        mDocumentName = documentName;
+        mPages = pages;
+        mVector = vector;
     }
 
     @Override
     public void onLayout(PrintAttributes oldAttributes, PrintAttributes newAttributes, CancellationSignal cancellationSignal, LayoutResultCallback callback, Bundle extras) {
-        // Create a new PdfDocument with the requested page attributes
-        mPdfDocument = new PrintedPdfDocument(mContext, newAttributes);
-
         // Respond to cancellation request
         if (cancellationSignal.isCanceled()) {
             callback.onLayoutCancelled();
             return;
         }
 
-        String fileName = String.format(mContext.getString(mDrawBackup ? R.string.email_subject_backup : R.string.email_subject), mName);
-        fileName += ".pdf";
-
+        // pages are drawn in onWrite with these attributes
+        mAttributes = newAttributes;
 
         PrintDocumentInfo info = new PrintDocumentInfo
-                .Builder(fileName)
+                .Builder(mDocumentName + ".pdf")
                 .setContentType(PrintDocumentInfo.CONTENT_TYPE_DOCUMENT)
-                .setPageCount(1)
+                .setPageCount(mPages.length)
                 .build();
 
         // Content layout reflow is complete
-        callback.onLayoutFinished(info, true);
+        callback.onLayoutFinished(info, !newAttributes.equals(oldAttributes));
     }
 
     @Override
     public void onWrite(PageRange[] pages, ParcelFileDescriptor destination, CancellationSignal cancellationSignal, WriteResultCallback callback) {
-        PdfDocument.Page page = mPdfDocument.startPage(0);
+        PrintedPdfDocument pdfDocument = new PrintedPdfDocument(mContext, mAttributes);
 
-        // check for cancellation
-        if (cancellationSignal.isCanceled()) {
-            callback.onWriteCancelled();
-            mPdfDocument.close();
-            mPdfDocument = null;
+        try {
+            for (int i = 0; i < mPages.length; i++) {
+                if (!containsPage(pages, i)) {
+                    continue;
+                }
+
+                // check for cancellation
+                if (cancellationSignal.isCanceled()) {
+                    callback.onWriteCancelled();
+                    return;
+                }
+
+                PdfDocument.Page page = pdfDocument.startPage(i);
+
+                try {
+                    drawPage(page.getCanvas(), mPages[i]);
+                } catch (QrCodeSizeException e) {
+                    callback.onWriteFailed(e.getMessage());
+                    return;
+                }
+
+                // Rendering is complete, so page can be finalized.
+                pdfDocument.finishPage(page);
+            }
+
+            // Write PDF document to file
+            pdfDocument.writeTo(new FileOutputStream(destination.getFileDescriptor()));
+        } catch (IOException e) {
+            callback.onWriteFailed(e.toString());
             return;
+        } finally {
+            pdfDocument.close();
         }
 
-        if (mDrawBackup) {
-            drawBackup(mContext, page.getCanvas(), mQrCode, mName);
+        // Signal the print framework the document is complete
+        callback.onWriteFinished(writtenPages(pages));
+    }
+
+    private void drawPage(Canvas canvas, Page page) throws QrCodeSizeException {
+        BitMatrix matrix = QrCodeRenderer.encode(page.mQrText);
+
+        QrCodeImage qrCode;
+        if (mVector) {
+            qrCode = QrCodeRenderer.vector(matrix);
         } else {
-            drawKeyPart(mContext, page.getCanvas(), mQrCode, mName);
+            qrCode = QrCodeRenderer.raster(QrCodeRenderer.toBitmap(matrix, QR_CODE_SIZE, QR_CODE_SIZE));
         }
 
-        // Rendering is complete, so page can be finalized.
-        mPdfDocument.finishPage(page);
+        if (page.mBackup) {
+            drawBackup(mContext, canvas, qrCode, page.mName, page.mPart, page.mPartCount);
+        } else {
+            drawKeyPart(mContext, canvas, qrCode, page.mName);
+        }
+    }
 
-        // Write PDF document to file
-        try {
-            mPdfDocument.writeTo(new FileOutputStream(
-                    destination.getFileDescriptor()));
-        } catch (IOException e) {
-            callback.onWriteFailed(e.toString());
-            return;
-        } finally {
-            mPdfDocument.close();
-            mPdfDocument = null;
+    private static boolean containsPage(PageRange[] ranges, int page) {
+        for (PageRange range : ranges) {
+            if (range.getStart() <= page && page <= range.getEnd()) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        PageRange[] writtenPages = new PageRange[] {new PageRange(0, 0)};
-        // Signal the print framework the document is complete
-        callback.onWriteFinished(writtenPages);
+    /**
+     * @return Requested page ranges limited to the pages of this document.
+     */
+    private PageRange[] writtenPages(PageRange[] ranges) {
+        List<PageRange> written = new ArrayList<>(ranges.length);
+
+        for (PageRange range : ranges) {
+            int end = Math.min(range.getEnd(), mPages.length - 1);
 
+            if (range.getStart() <= end) {
+                written.add(new PageRange(range.getStart(), end));
+            }
+        }
+
+        return written.toArray(new PageRange[written.size()]);
     }
 
-    static void drawKeyPart(Context context, Canvas canvas, Bitmap qrCode, String contactName) {
+    static void drawKeyPart(Context context, Canvas canvas, QrCodeImage qrCode, String contactName) {
         Resources res = context.getResources();
         String userName = DatabaseHelper.getHelper(context).getUserName();
 
@@ -129,16 +223,20 @@ class QrCodePrintAdapter extends PrintDocumentAdapter {
         drawTextMultiLine(canvas, paint, headline, leftMargin, 0, top, lineOffset + 2);
 
         top += 40;
-        int leftQrCode = (canvas.getWidth() - qrCode.getWidth()) / 2;
-        canvas.drawBitmap(qrCode, leftQrCode, top, null);
+        int leftQrCode = (canvas.getWidth() - QR_CODE_SIZE) / 2;
+        qrCode.draw(canvas, leftQrCode, top, QR_CODE_SIZE);
 
-        top += qrCode.getHeight() + 30;
+        top += QR_CODE_SIZE + 30;
         paint.setTextSize(12);
         paint.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.NORMAL));
         drawTextMultiLine(canvas, paint, hints, leftMargin, 10, top, lineOffset);
     }
 
-    static void drawBackup(Context context, Canvas canvas, Bitmap qrCode, String dataBackupName) {
+    /**
+     * @param part      Number of the QR-Code if the backup was split into multiple QR-Codes, starting at 1.
+     * @param partCount Count of QR-Codes of the backup.
+     */
+    static void drawBackup(Context context, Canvas canvas, QrCodeImage qrCode, String dataBackupName, int part, int partCount) {
         Resources res = context.getResources();
         String hints = res.getString(R.string.printed_qr_backup_hints);
         String restore = res.getString(R.string.printed_qr_backup_restore);
@@ -151,6 +249,9 @@ class QrCodePrintAdapter extends PrintDocumentAdapter {
         Paint paint = new Paint(Paint.LINEAR_TEXT_FLAG | Paint.ANTI_ALIAS_FLAG);
 
         String title = String.format(context.getString(R.string.printed_qr_backup_title), dataBackupName);
+        if (partCount > 1) {
+            title += "\n" + String.format(context.getString(R.string.printed_qr_backup_part), part, partCount);
+        }
 
         top += 35;
         paint.setTextSize(16);
@@ -158,10 +259,10 @@ class QrCodePrintAdapter extends PrintDocumentAdapter {
         drawTextMultiLine(canvas, paint, title, leftMargin, 0, top, lineOffset + 2);
 
         top += 40;
-        int leftQrCode = (canvas.getWidth() - qrCode.getWidth()) / 2;
-        canvas.drawBitmap(qrCode, leftQrCode, top, null);
+        int leftQrCode = (canvas.getWidth() - QR_CODE_SIZE) / 2;
+        qrCode.draw(canvas, leftQrCode, top, QR_CODE_SIZE);
 
-        top += qrCode.getHeight() + 30;
+        top += QR_CODE_SIZE + 30;
         paint.setTextSize(12);
         paint.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.NORMAL));
         top = drawTextMultiLine(canvas, paint, hints, leftMargin, 10, top, lineOffset);
@@ -0,0 +1,181 @@
+package com.android.secret.sharing;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+/**
+ * Encodes a text into a matrix of QR-Code modules once and draws the modules directly on a canvas.
+ * Compared to rendering a full size ARGB_8888 bitmap first, views, PDF pages and images only need
+ * the memory of their own canvas.
+ */
+final class QrCodeRenderer {
+
+    private QrCodeRenderer() {
+    }
+
+    /**
+     * Encode a text into a QR-Code matrix with one element per module, including the quiet zone.
+     *
+     * @throws QrCodeSizeException If the text does not fit into a QR-Code.
+     */
+    static BitMatrix encode(String qrText) throws QrCodeSizeException {
+        if (qrText.length() > AndroidSecretSharing.MAXIMUM_QR_CODE_SIZE) {
+            throw new QrCodeSizeException(qrText.length());
+        }
+
+        try {
+            // a size of 0 creates the smallest matrix with one element per module
+            return new QRCodeWriter().encode(qrText, BarcodeFormat.QR_CODE, 0, 0);
+        } catch (WriterException e) {
+            throw new QrCodeSizeException(qrText.length());
+        }
+    }
+
+    /**
+     * Draw a QR-Code on a canvas. Modules have the same integer size so the QR-Code stays sharp on
+     * bitmaps. The QR-Code is centered in the given square.
+     *
+     * @param size Edge length of the square the QR-Code is drawn in.
+     */
+    static void draw(Canvas canvas, BitMatrix matrix, float left, float top, float size) {
+        int modules = matrix.getWidth();
+        int moduleSize = Math.max(1, (int) size / modules);
+        float offset = (size - moduleSize * modules) / 2;
+
+        left += offset;
+        top += offset;
+
+        Paint paint = new Paint();
+        paint.setColor(Color.WHITE);
+        canvas.drawRect(left, top, left + moduleSize * modules, top + moduleSize * modules, paint);
+        paint.setColor(Color.BLACK);
+
+        for (int y = 0; y < modules; y++) {
+            float rowTop = top + y * moduleSize;
+            int x = 0;
+
+            while (x < modules) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+
+                // draw a run of dark modules as one rectangle
+                int start = x;
+                while (x < modules && matrix.get(x, y)) {
+                    x++;
+                }
+
+                canvas.drawRect(left + start * moduleSize, rowTop, left + x * moduleSize, rowTop + moduleSize, paint);
+            }
+        }
+    }
+
+    /**
+     * Draw a QR-Code with {@link #draw(Canvas, BitMatrix, float, float, float)}. Use this for bitmaps.
+     */
+    static QrCodeImage modules(final BitMatrix matrix) {
+        return new QrCodeImage() {
+            @Override
+            public void draw(Canvas canvas, float left, float top, float size) {
+                QrCodeRenderer.draw(canvas, matrix, left, top, size);
+            }
+        };
+    }
+
+    /**
+     * Draw a QR-Code as one filled path. Modules are not rounded to whole pixels and no background is
+     * drawn, so on a white PDF page the QR-Code is written with a few vector operations. It is sharp at
+     * any printer resolution and much smaller than an embedded image.
+     */
+    static QrCodeImage vector(BitMatrix matrix) {
+        final int modules = matrix.getWidth();
+        final Path path = toPath(matrix);
+
+        return new QrCodeImage() {
+            @Override
+            public void draw(Canvas canvas, float left, float top, float size) {
+                Paint paint = new Paint();
+                paint.setColor(Color.BLACK);
+                paint.setStyle(Paint.Style.FILL);
+
+                int count = canvas.save();
+                canvas.translate(left, top);
+                canvas.scale(size / modules, size / modules);
+                canvas.drawPath(path, paint);
+                canvas.restoreToCount(count);
+            }
+        };
+    }
+
+    /**
+     * Draw a pre-rendered QR-Code bitmap scaled to the square.
+     */
+    static QrCodeImage raster(final Bitmap qrCode) {
+        return new QrCodeImage() {
+            @Override
+            public void draw(Canvas canvas, float left, float top, float size) {
+                canvas.drawBitmap(qrCode, null, new RectF(left, top, left + size, top + size), null);
+            }
+        };
+    }
+
+    /**
+     * Create a path of all dark modules with a module size of 1. Horizontal runs of dark modules are
+     * merged into one rectangle.
+     */
+    static Path toPath(BitMatrix matrix) {
+        Path path = new Path();
+        int modules = matrix.getWidth();
+
+        for (int y = 0; y < modules; y++) {
+            int x = 0;
+
+            while (x < modules) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+
+                int start = x;
+                while (x < modules && matrix.get(x, y)) {
+                    x++;
+                }
+
+                path.addRect(start, y, x, y + 1, Path.Direction.CW);
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * Render a QR-Code into a new RGB_565 bitmap which needs half the memory of ARGB_8888.
+     *
+     * @param width  Width of the bitmap. If width or height is not positive, e.g. of a view that was not
+     *               laid out yet, the bitmap has one pixel per module.
+     */
+    static Bitmap toBitmap(BitMatrix matrix, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            width = matrix.getWidth();
+            height = matrix.getHeight();
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        bitmap.eraseColor(Color.WHITE);
+
+        int size = Math.min(width, height);
+        draw(new Canvas(bitmap), matrix, (width - size) / 2, (height - size) / 2, size);
+
+        return bitmap;
+    }
+}
@@ -0,0 +1,25 @@
+package com.android.secret.sharing;
+
+import android.widget.ImageView;
+
+/**
+ * Receives the result of showing a QR-Code asynchronously. Methods are called on the main thread.
+ */
+public interface QrCodeShowListener {
+
+    /**
+     * The QR-Code is shown on the view.
+     */
+    void qrCodeShown(ImageView view);
+
+    /**
+     * The content does not fit into a QR-Code. Nothing is shown on the view.
+     */
+    void qrCodeTooLarge(ImageView view, QrCodeSizeException exception);
+
+    /**
+     * The QR-Code could not be created, e.g. because the key part could not be loaded. Nothing is
+     * shown on the view.
+     */
+    void qrCodeFailed(ImageView view, Exception exception);
+}
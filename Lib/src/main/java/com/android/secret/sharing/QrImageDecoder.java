@@ -0,0 +1,437 @@
+package com.android.secret.sharing;
+
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import github.nisrulz.qreader.QRDataListener;
+
+/**
+ * Decodes QR-Codes from images and PDF files without the camera, e.g. Email attachments created by
+ * {@link AndroidSecretSharing#sendEmail} or printed key parts that were saved as PDF. Google Play
+ * Services must be installed on the device.
+ *
+ * Found QR-Codes are checked like QR-Codes of the {@link QrReader} and passed to the same
+ * listeners. Every image or file is decoded on its own thread of a small worker pool.
+ */
+public class QrImageDecoder {
+    private static final String TAG = "QrImageDecoder";
+
+    private static final int THREAD_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    // images of all decoders are decoded in parallel
+    private static final ExecutorService mWorkers = Executors.newFixedThreadPool(THREAD_COUNT, new BackgroundThreadFactory("QR-Code image decoder"));
+
+    // larger images are downsampled, Email attachments and scanned pages stay readable
+    private static final int MAXIMUM_IMAGE_SIZE = 2048;
+
+    // PDF pages are rendered with this resolution, a printed QR-Code module has at least 3 pixels
+    private static final int PDF_DPI = 150;
+    private static final int POINTS_PER_INCH = 72;
+
+    private static final byte[] PDF_MAGIC = { '%', 'P', 'D', 'F' };
+
+    private final Context mContext;
+    private final QrTextProcessor mProcessor;
+    private final FrameTimer mFrameTimer = new FrameTimer(TAG);
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // QR-Codes that are found in multiple files are only passed once
+    private final Set<String> mDecodedTexts = new HashSet<>();
+    private final List<Future<?>> mTasks = new ArrayList<>();
+    // guarded by mTasks, counters stay here until their listener was called
+    private final List<Counter> mCounters = new ArrayList<>();
+
+    /**
+     * Decode arbitrary data.
+     *
+     * @param listener Receives the content of found QR-Codes.
+     */
+    QrImageDecoder(Context context, QRDataListener listener) {
+        mContext = context.getApplicationContext();
+        mProcessor = new QrTextProcessor(mContext, mFrameTimer, listener);
+    }
+
+    /**
+     * Decode key parts.
+     *
+     * @param listener      Receives the found key parts.
+     * @param foreignKey    True if key parts of other persons are expected.
+     */
+    QrImageDecoder(Context context, QrKeyPartListener listener, boolean foreignKey) {
+        mContext = context.getApplicationContext();
+        mProcessor = new QrTextProcessor(mContext, mFrameTimer, listener, foreignKey);
+    }
+
+    /**
+     * Ignore timestamp and name of found key parts. Needed when backup should be restored on another device.
+     */
+    public void setIgnoreKeyPartOrigin(boolean ignoreOrigin) {
+        mProcessor.setIgnoreKeyPartOrigin(ignoreOrigin);
+    }
+
+    /**
+     * Decode images.
+     *
+     * @param listener Receives the count of found QR-Codes on the main thread after all images were
+     *                 decoded. Not called if the decoder is cancelled before. Can be null.
+     */
+    public void decode(final Bitmap[] images, @Nullable ResultListener<Integer> listener) {
+        final Counter counter = new Counter(images.length, listener);
+
+        for (final Bitmap image : images) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    BarcodeDetector detector = createDetector();
+
+                    try {
+                        counter.found(decode(detector, image));
+                    } finally {
+                        detector.release();
+                        counter.finished();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Decode images or PDF files, e.g. received attachments. PDF files can only be decoded on
+     * Android 5.0 and newer, on older versions they are skipped. Files that cannot be read are skipped.
+     *
+     * @param files     Content or file URIs of JPEG, PNG or PDF files.
+     * @param listener  Receives the count of found QR-Codes on the main thread after all files were
+     *                  decoded. Not called if the decoder is cancelled before. Can be null.
+     */
+    public void decode(Uri[] files, @Nullable ResultListener<Integer> listener) {
+        final Counter counter = new Counter(files.length, listener);
+
+        for (final Uri file : files) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    BarcodeDetector detector = createDetector();
+
+                    try {
+                        if (isPdf(file)) {
+                            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                                counter.found(decodePdf(detector, file));
+                            } else {
+                                Log.w(TAG, "PDF files cannot be decoded before Android 5.0: " + file);
+                            }
+                        } else {
+                            counter.found(decodeImage(detector, file));
+                        }
+                    } catch (IOException | SecurityException e) {
+                        Log.w(TAG, "Could not read " + file, e);
+                    } finally {
+                        detector.release();
+                        counter.finished();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop decoding. QR-Codes of files that are decoded right now are not passed to the listener
+     * anymore. The count of found QR-Codes is not reported for any earlier decode call, even if its
+     * files were decoded already and only the result is pending.
+     */
+    public void cancel() {
+        synchronized (mTasks) {
+            for (Future<?> task : mTasks) {
+                task.cancel(true);
+            }
+            mTasks.clear();
+
+            for (Counter counter : mCounters) {
+                counter.cancel();
+            }
+            mCounters.clear();
+        }
+    }
+
+    private void submit(Runnable task) {
+        synchronized (mTasks) {
+            Iterator<Future<?>> iterator = mTasks.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isDone()) {
+                    iterator.remove();
+                }
+            }
+
+            mTasks.add(mWorkers.submit(task));
+        }
+    }
+
+    private BarcodeDetector createDetector() {
+        // a detector per file, so files can be decoded in parallel
+        return new BarcodeDetector.Builder(mContext)
+                .setBarcodeFormats(Barcode.QR_CODE)
+                .build();
+    }
+
+    /**
+     * Decode all QR-Codes of an image and process their texts.
+     *
+     * @return Count of found QR-Codes.
+     */
+    private int decode(BarcodeDetector detector, Bitmap image) {
+        if (Thread.currentThread().isInterrupted()) {
+            // decoder was cancelled
+            return 0;
+        }
+
+        long start = System.nanoTime();
+
+        if (!detector.isOperational()) {
+            Log.w(TAG, "Barcode detector is not available");
+            return 0;
+        }
+
+        SparseArray<Barcode> barcodes = detector.detect(new Frame.Builder().setBitmap(image).build());
+        mFrameTimer.detectorFinished(start);
+
+        for (int i = 0; i < barcodes.size(); i++) {
+            String text = barcodes.valueAt(i).rawValue;
+
+            synchronized (mDecodedTexts) {
+                if (!mDecodedTexts.add(text)) {
+                    // same QR-Code in another file
+                    continue;
+                }
+            }
+
+            if (!Thread.currentThread().isInterrupted()) {
+                mProcessor.process(text, start);
+            }
+        }
+
+        return barcodes.size();
+    }
+
+    private int decodeImage(BarcodeDetector detector, Uri file) throws IOException {
+        ContentResolver resolver = mContext.getContentResolver();
+
+        // read the size first to avoid loading large photos into memory
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeBitmap(resolver, file, options);
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / options.inSampleSize > MAXIMUM_IMAGE_SIZE) {
+            options.inSampleSize *= 2;
+        }
+
+        // QR-Codes are black and white, RGB_565 needs half the memory of ARGB_8888
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+
+        Bitmap image = decodeBitmap(resolver, file, options);
+        if (image == null) {
+            throw new IOException("No image: " + file);
+        }
+
+        try {
+            return decode(detector, image);
+        } finally {
+            image.recycle();
+        }
+    }
+
+    @Nullable
+    private static Bitmap decodeBitmap(ContentResolver resolver, Uri file, BitmapFactory.Options options) throws IOException {
+        InputStream in = resolver.openInputStream(file);
+        if (in == null) {
+            throw new IOException("Cannot open " + file);
+        }
+
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Render every page of a PDF file and decode its QR-Codes.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private int decodePdf(BarcodeDetector detector, Uri file) throws IOException {
+        ParcelFileDescriptor descriptor = mContext.getContentResolver().openFileDescriptor(file, "r");
+        if (descriptor == null) {
+            throw new IOException("Cannot open " + file);
+        }
+
+        PdfRenderer renderer;
+        try {
+            renderer = new PdfRenderer(descriptor);
+        } catch (IOException | SecurityException e) {
+            // only an open renderer closes the descriptor
+            descriptor.close();
+            throw e;
+        }
+
+        Bitmap page = null;
+        int found = 0;
+
+        try {
+            for (int i = 0; i < renderer.getPageCount() && !Thread.currentThread().isInterrupted(); i++) {
+                PdfRenderer.Page pdfPage = renderer.openPage(i);
+
+                try {
+                    int width = pdfPage.getWidth() * PDF_DPI / POINTS_PER_INCH;
+                    int height = pdfPage.getHeight() * PDF_DPI / POINTS_PER_INCH;
+
+                    // pages of a printed document usually have the same size, so the bitmap is reused
+                    if (page == null || page.getWidth() != width || page.getHeight() != height) {
+                        if (page != null) {
+                            page.recycle();
+                        }
+                        page = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                    }
+
+                    // pages are rendered transparent, the detector needs a white background
+                    page.eraseColor(Color.WHITE);
+                    pdfPage.render(page, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+                } finally {
+                    pdfPage.close();
+                }
+
+                found += decode(detector, page);
+            }
+        } finally {
+            renderer.close();
+
+            if (page != null) {
+                // erase the QR-Code before the memory is freed
+                page.eraseColor(Color.WHITE);
+                page.recycle();
+            }
+        }
+
+        return found;
+    }
+
+    private boolean isPdf(Uri file) throws IOException {
+        String type = mContext.getContentResolver().getType(file);
+        if (type != null) {
+            return "application/pdf".equals(type);
+        }
+
+        // file URIs have no type
+        InputStream in = mContext.getContentResolver().openInputStream(file);
+        if (in == null) {
+            throw new IOException("Cannot open " + file);
+        }
+
+        try {
+            for (byte magic : PDF_MAGIC) {
+                if (in.read() != magic) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Counts found QR-Codes and calls the listener after the last file was decoded, unless the
+     * decoder was cancelled.
+     */
+    private class Counter {
+        private final AtomicInteger mRemaining;
+        private final AtomicInteger mFound = new AtomicInteger();
+        private final ResultListener<Integer> mListener;
+        private volatile boolean mCancelled;
+
+        Counter(int files, @Nullable ResultListener<Integer> listener) {
+            mRemaining = new AtomicInteger(files);
+            mListener = listener;
+
+            synchronized (mTasks) {
+                mCounters.add(this);
+            }
+
+            if (files == 0) {
+                notifyListener();
+            }
+        }
+
+        /**
+         * Tasks that were cancelled before they started never finish, so the listener is not
+         * called at all instead of with a partial count.
+         */
+        void cancel() {
+            mCancelled = true;
+        }
+
+        void found(int count) {
+            mFound.addAndGet(count);
+        }
+
+        void finished() {
+            if (mRemaining.decrementAndGet() == 0) {
+                notifyListener();
+            }
+        }
+
+        private void notifyListener() {
+            if (mListener == null || mCancelled) {
+                remove();
+                return;
+            }
+
+            // posted after the found QR-Codes, only saved key parts can arrive later
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    remove();
+
+                    // the decoder can be cancelled while this is waiting on the main thread
+                    if (!mCancelled) {
+                        mListener.onResult(mFound.get());
+                    }
+                }
+            });
+        }
+
+        private void remove() {
+            synchronized (mTasks) {
+                mCounters.remove(this);
+            }
+        }
+    }
+}
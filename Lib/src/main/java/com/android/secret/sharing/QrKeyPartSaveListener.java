@@ -0,0 +1,26 @@
+package com.android.secret.sharing;
+
+/**
+ * Receives scanned key parts that are saved in the database. Implement this instead of
+ * {@link QrKeyPartListener} to be notified if a scanned key part could not be saved or was
+ * already saved before.
+ */
+public interface QrKeyPartSaveListener extends QrKeyPartListener {
+
+    /**
+     * A valid key part was scanned but could not be saved. Called instead of
+     * {@link #qrCodeDetected(SecretPresentation)}.
+     *
+     * @param secret    The scanned key part.
+     * @param e         Cause of the failure.
+     */
+    void keyPartNotSaved(SecretPresentation secret, Exception e);
+
+    /**
+     * A key part of another person was scanned that is already saved. It is not saved again. Called
+     * instead of {@link #qrCodeDetected(SecretPresentation)}.
+     *
+     * @param secret The scanned key part.
+     */
+    void duplicateKeyPart(SecretPresentation secret);
+}
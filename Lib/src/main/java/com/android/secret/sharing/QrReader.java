@@ -3,12 +3,22 @@ package com.android.secret.sharing;
 import android.Manifest;
 import android.app.Activity;
 import android.content.pm.PackageManager;
+import android.os.SystemClock;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
-import android.text.TextUtils;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
-import com.google.gson.Gson;
+import com.google.android.gms.vision.CameraSource;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import github.nisrulz.qreader.QRDataListener;
 import github.nisrulz.qreader.QREader;
@@ -16,21 +26,26 @@ import github.nisrulz.qreader.QREader;
 /**
  * Reads QR-Codes. Google Play Services must be installed on the device. Version 7.8 is
  * requiered at least.
+ *
+ * Detected QR-Codes are decoded and checked on a background worker and key parts are saved on the
+ * database writer thread. Only the listener is called on the UI thread.
  */
 public class QrReader {
+    private static final String TAG = "QrReader";
     private static final int REQUEST_CODE_PERMISSION_CAMERA = 4289;
 
+    // detections of all readers are processed one after another
+    private static final ExecutorService mWorker = Executors.newSingleThreadExecutor(new BackgroundThreadFactory("QR-Code reader"));
+
     private QREader mQReader;
-    private QrKeyPartListener mListener;
+    private QrReaderOptions mOptions;
+    private CameraSource mCameraSource;
     private Activity mActivity;
     private SurfaceView mSurfaceView;
-    private DatabaseHelper mDbHelper;
-
-    private boolean mForeignKey;
-    private long mTimestamp;
-    private boolean mIgnoreKeyPartOrigin; // ignore timestamp and name of scanned secret. Used to restore backup from another device
+    private QrTextProcessor mProcessor;
 
-    private QRDataListener mQrDataListener;
+    private final FrameTimer mFrameTimer = new FrameTimer(TAG);
+    private final DetectionFilter mDetectionFilter = new DetectionFilter(DetectionFilter.DEFAULT_WINDOW_MILLIS);
 
     /**
      * Scan arbitrary data. Camera permission will be checked. The
@@ -41,9 +56,10 @@ public class QrReader {
      * @param listener Receives the content of the scanned QR-Code.
      */
     QrReader(Activity activity, SurfaceView surfaceView, QRDataListener listener) {
-        this(activity, surfaceView, null, false);
+        mActivity = activity;
+        mSurfaceView = surfaceView;
 
-        mQrDataListener = listener;
+        mProcessor = new QrTextProcessor(activity, mFrameTimer, listener);
     }
 
     /**
@@ -55,13 +71,10 @@ public class QrReader {
      * @param listener Receives the key part of the scanned QR-Code.
      */
     QrReader(Activity activity, SurfaceView surfaceView, QrKeyPartListener listener, boolean foreignKey) {
-        mListener = listener;
         mActivity = activity;
         mSurfaceView = surfaceView;
-        mForeignKey = foreignKey;
 
-        mDbHelper = DatabaseHelper.getHelper(activity);
-        mTimestamp = mDbHelper.getContainerTimestamp();
+        mProcessor = new QrTextProcessor(activity, mFrameTimer, listener, foreignKey);
     }
 
 
@@ -77,10 +90,16 @@ public class QrReader {
      * Restart the QR-Reader.
      */
     public void restart() {
+        mDetectionFilter.reset();
+
         // null-check necessary if user has not granted camera permission yet
         if (mQReader != null) {
             mQReader.start();
         }
+
+        if (mCameraSource != null && mSurfaceView.getHolder().getSurface().isValid()) {
+            startCamera();
+        }
     }
 
     /**
@@ -97,13 +116,48 @@ public class QrReader {
                 mQReader.releaseAndCleanup();
             }
         }
+
+        if (mCameraSource != null) {
+            mCameraSource.stop();
+
+            if (release) {
+                mSurfaceView.getHolder().removeCallback(mSurfaceCallback);
+                mCameraSource.release();
+                mCameraSource = null;
+            }
+        }
+    }
+
+    /**
+     * Decode frames with a lower resolution, only in the centre or with a lower frame rate. Must be
+     * called before {@link #showQRReader()}.
+     *
+     * @param options Null to decode full frames as fast as possible.
+     */
+    public void setOptions(QrReaderOptions options) {
+        mOptions = options;
     }
 
     /**
      * Ignore timestamp and name of scanned key parts. Needed when backup should be restored on another device,
      */
     public void setIgnoreKeyPartOrigin(boolean ignoreOrigin) {
-        mIgnoreKeyPartOrigin = ignoreOrigin;
+        mProcessor.setIgnoreKeyPartOrigin(ignoreOrigin);
+    }
+
+    /**
+     * Key parts are saved in the database by default. A scan session only needs them in memory.
+     */
+    void setSaveKeyParts(boolean save) {
+        mProcessor.setSaveKeyParts(save);
+    }
+
+    /**
+     * @return Count of camera frames that were dropped because they showed a QR-Code that was just
+     * processed.
+     */
+    public int getSuppressedDetectionCount() {
+        return mDetectionFilter.getSuppressedCount();
     }
 
     /**
@@ -116,6 +170,11 @@ public class QrReader {
             return;
         }
 
+        if (mOptions != null) {
+            showCameraSource();
+            return;
+        }
+
         mQReader = new QREader.Builder(mActivity, mSurfaceView, listener)
                 .build();
 
@@ -123,59 +182,95 @@ public class QrReader {
         mQReader.start();
     }
 
+    /**
+     * Use an own camera source instead of the default QR-Reader, so frames can be cropped and skipped
+     * before they are decoded.
+     */
+    private void showCameraSource() {
+        BarcodeDetector barcodeDetector = new BarcodeDetector.Builder(mActivity)
+                .setBarcodeFormats(Barcode.QR_CODE)
+                .build();
+
+        RegionDetector detector = new RegionDetector(barcodeDetector, mOptions);
+        detector.setProcessor(new Detector.Processor<Barcode>() {
+            @Override
+            public void release() {
+            }
+
+            @Override
+            public void receiveDetections(Detector.Detections<Barcode> detections) {
+                SparseArray<Barcode> barcodes = detections.getDetectedItems();
+
+                if (barcodes.size() > 0) {
+                    listener.onDetected(barcodes.valueAt(0).rawValue);
+                }
+            }
+        });
+
+        CameraSource.Builder builder = new CameraSource.Builder(mActivity, detector)
+                .setFacing(CameraSource.CAMERA_FACING_BACK)
+                .setAutoFocusEnabled(true);
+
+        if (mOptions.getDecodeWidth() > 0 && mOptions.getDecodeHeight() > 0) {
+            builder.setRequestedPreviewSize(mOptions.getDecodeWidth(), mOptions.getDecodeHeight());
+        }
+
+        mCameraSource = builder.build();
+        mSurfaceView.getHolder().addCallback(mSurfaceCallback);
+
+        if (mSurfaceView.getHolder().getSurface().isValid()) {
+            startCamera();
+        }
+    }
+
+    @SuppressWarnings("MissingPermission") // permission is checked in showQRReader()
+    private void startCamera() {
+        try {
+            mCameraSource.start(mSurfaceView.getHolder());
+        } catch (IOException e) {
+            Log.e(TAG, "Could not start camera", e);
+        }
+    }
+
+    private SurfaceHolder.Callback mSurfaceCallback = new SurfaceHolder.Callback() {
+        @Override
+        public void surfaceCreated(SurfaceHolder holder) {
+            if (mCameraSource != null) {
+                startCamera();
+            }
+        }
+
+        @Override
+        public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        }
+
+        @Override
+        public void surfaceDestroyed(SurfaceHolder holder) {
+            if (mCameraSource != null) {
+                mCameraSource.stop();
+            }
+        }
+    };
+
     private QRDataListener listener = new QRDataListener() {
         @Override
         public void onDetected(final String data) {
-            mActivity.runOnUiThread(new Runnable() {
+            // called on the detector thread of the camera, do not block it
+            final long start = System.nanoTime();
+
+            if (!mDetectionFilter.accept(data, SystemClock.elapsedRealtime())) {
+                // same QR-Code as in a previous frame
+                return;
+            }
+
+            mWorker.execute(new Runnable() {
                 @Override
                 public void run() {
-                    if (mQrDataListener != null) {
-                        // arbitrary data found
-                        mQrDataListener.onDetected(data);
-                        return;
-                    }
-
-                    KeyPartImpl keyPart;
-                    try {
-                        keyPart = new Gson().fromJson(data, KeyPartImpl.class);
-                    } catch (Exception e) {
-                        // user should scan a secret part but did scan something else
-                        mListener.wrongSecretPart();
-                        return;
-                    }
-
-                    if (mIgnoreKeyPartOrigin) {
-                        mListener.qrCodeDetected(keyPart);
-                        return;
-                    }
-
-                    String userName = mDbHelper.getUserName();
-                    String secretPartUserName = keyPart.getOwner();
-                    boolean nonEmptyNames = !TextUtils.isEmpty(userName) && !TextUtils.isEmpty(secretPartUserName);
-
-                    if (mForeignKey) {
-                        if (nonEmptyNames) {
-                            if (userName.equals(secretPartUserName)) {
-                                // user tries to store key part from himself as a foreign key
-                                mListener.wrongSecretPart();
-                                return;
-                            }
-                        }
-                        keyPart.setForeign(true);
-                        keyPart.save(mActivity);
-                    } else {
-                        if (keyPart.getTimestamp() != mTimestamp || (nonEmptyNames && !userName.equals(secretPartUserName))) {
-                            // secret part of other person or secret part of other backup of this person
-                            mListener.wrongSecretPart();
-                            return;
-                        }
-                        keyPart.setForeign(false);
-                        keyPart.save(mActivity);
-                    }
-
-                    mListener.qrCodeDetected(keyPart);
+                    mProcessor.process(data, start);
                 }
             });
+
+            mFrameTimer.detectorFinished(start);
         }
     };
 }
@@ -0,0 +1,65 @@
+package com.android.secret.sharing;
+
+/**
+ * Options to make scanning of dense QR-Codes faster and save battery. By default full camera
+ * frames are decoded as fast as possible.
+ */
+public class QrReaderOptions {
+    private int mDecodeWidth;
+    private int mDecodeHeight;
+    private float mRegionOfInterest = 1f;
+    private float mMaximumDecodesPerSecond;
+
+    /**
+     * Request a camera preview size. The camera chooses the closest supported size. Smaller frames
+     * are decoded faster, but QR-Codes must fill more of the frame.
+     *
+     * @param width     Width in pixels. 0 for the default size.
+     * @param height    Height in pixels. 0 for the default size.
+     */
+    public void setDecodeResolution(int width, int height) {
+        mDecodeWidth = width;
+        mDecodeHeight = height;
+    }
+
+    /**
+     * Only decode the centre of each frame. The user has to hold the QR-Code in the centre of the
+     * camera view.
+     *
+     * @param fraction Part of the width and height of a frame that is decoded, from 0 (exclusive) to 1.
+     */
+    public void setRegionOfInterest(float fraction) {
+        if (fraction <= 0 || fraction > 1) {
+            throw new IllegalArgumentException("Region of interest must be in (0, 1]: " + fraction);
+        }
+        mRegionOfInterest = fraction;
+    }
+
+    /**
+     * Limit how many frames are decoded per second. Frames in between are skipped.
+     *
+     * @param decodesPerSecond Maximum count of decoded frames per second. 0 for no limit.
+     */
+    public void setMaximumDecodesPerSecond(float decodesPerSecond) {
+        mMaximumDecodesPerSecond = decodesPerSecond;
+    }
+
+    int getDecodeWidth() {
+        return mDecodeWidth;
+    }
+
+    int getDecodeHeight() {
+        return mDecodeHeight;
+    }
+
+    float getRegionOfInterest() {
+        return mRegionOfInterest;
+    }
+
+    /**
+     * @return Minimum time between two decoded frames in milliseconds.
+     */
+    long getMinimumDecodeInterval() {
+        return mMaximumDecodesPerSecond > 0 ? (long) (1000 / mMaximumDecodesPerSecond) : 0;
+    }
+}
@@ -0,0 +1,181 @@
+package com.android.secret.sharing;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.android.share.sharing.R;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders a QR-Code in the background and shows it on an image view. The running task of a view is
+ * stored as tag of the view. Starting a new task for the same view cancels the previous one, so a
+ * reused view never shows a stale QR-Code.
+ */
+class QrRenderTask implements Runnable {
+    private static final String TAG = "QrRenderTask";
+    private static final int RENDER_THREADS = 2;
+
+    private static final ExecutorService mExecutor = Executors.newFixedThreadPool(RENDER_THREADS, new BackgroundThreadFactory("QR-Code renderer"));
+    private static final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final QrCodeCache mCache;
+    private final ImageView mView;
+    private final Callable<String> mQrText;
+    private final QrCodeShowListener mListener;
+
+    private int mWidth;
+    private int mHeight;
+    private volatile boolean mCancelled;
+    private Future<?> mFuture;
+    private View.OnLayoutChangeListener mLayoutListener;
+
+    /**
+     * Render a QR-Code for a view. Must be called on the main thread.
+     *
+     * @param qrText Creates the text of the QR-Code. It is called in the background.
+     */
+    static void start(Context context, ImageView view, Callable<String> qrText, @Nullable QrCodeShowListener listener) {
+        cancel(view);
+
+        final QrRenderTask task = new QrRenderTask(QrCodeCache.getCache(context), view, qrText, listener);
+        view.setTag(R.id.qr_render_task, task);
+
+        if (view.getWidth() > 0 && view.getHeight() > 0) {
+            task.submit();
+            return;
+        }
+
+        // wait until the size of the view is known
+        task.mLayoutListener = new View.OnLayoutChangeListener() {
+            @Override
+            public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                if (right - left == 0 || bottom - top == 0) {
+                    return;
+                }
+
+                v.removeOnLayoutChangeListener(this);
+                task.mLayoutListener = null;
+
+                if (task.isCurrent()) {
+                    task.submit();
+                }
+            }
+        };
+        view.addOnLayoutChangeListener(task.mLayoutListener);
+    }
+
+    /**
+     * Cancel the running task of a view. Must be called on the main thread.
+     */
+    static void cancel(ImageView view) {
+        Object tag = view.getTag(R.id.qr_render_task);
+
+        if (tag instanceof QrRenderTask) {
+            QrRenderTask task = (QrRenderTask) tag;
+            task.mCancelled = true;
+
+            // a view that is never laid out would keep the task forever
+            if (task.mLayoutListener != null) {
+                view.removeOnLayoutChangeListener(task.mLayoutListener);
+                task.mLayoutListener = null;
+            }
+
+            if (task.mFuture != null) {
+                task.mFuture.cancel(false);
+            }
+        }
+
+        view.setTag(R.id.qr_render_task, null);
+    }
+
+    private QrRenderTask(QrCodeCache cache, ImageView view, Callable<String> qrText, QrCodeShowListener listener) {
+        mCache = cache;
+        mView = view;
+        mQrText = qrText;
+        mListener = listener;
+    }
+
+    private void submit() {
+        mWidth = mView.getWidth();
+        mHeight = mView.getHeight();
+        mFuture = mExecutor.submit(this);
+    }
+
+    @Override
+    public void run() {
+        if (mCancelled) {
+            return;
+        }
+
+        try {
+            String qrText = mQrText.call();
+
+            if (mCancelled) {
+                return;
+            }
+
+            final Bitmap qrCode = mCache.getQrCode(qrText, mWidth, mHeight);
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!finish()) {
+                        return;
+                    }
+
+                    mView.setImageBitmap(qrCode);
+                    if (mListener != null) {
+                        mListener.qrCodeShown(mView);
+                    }
+                }
+            });
+        } catch (final QrCodeSizeException e) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (finish() && mListener != null) {
+                        mListener.qrCodeTooLarge(mView, e);
+                    }
+                }
+            });
+        } catch (final Exception e) {
+            Log.e(TAG, "Could not create QR-Code", e);
+
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (finish() && mListener != null) {
+                        mListener.qrCodeFailed(mView, e);
+                    }
+                }
+            });
+        }
+    }
+
+    private boolean isCurrent() {
+        return !mCancelled && mView.getTag(R.id.qr_render_task) == this;
+    }
+
+    /**
+     * Remove this task from its view.
+     *
+     * @return False if the task was cancelled or replaced by a newer one.
+     */
+    private boolean finish() {
+        if (!isCurrent()) {
+            return false;
+        }
+
+        mView.setTag(R.id.qr_render_task, null);
+        return true;
+    }
+}
@@ -0,0 +1,219 @@
+package com.android.secret.sharing;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+
+import github.nisrulz.qreader.QRDataListener;
+
+/**
+ * Checks the text of decoded QR-Codes and passes key parts or data to the listener. Used by
+ * {@link QrReader} for camera frames and by {@link QrImageDecoder} for images and PDF files, so
+ * both accept the same QR-Codes.
+ *
+ * Texts can be processed on any thread. Key parts are saved on the database writer thread and
+ * listeners are called on the UI thread.
+ */
+class QrTextProcessor {
+    private static final String TAG = "QrTextProcessor";
+
+    private final Context mContext;
+    private final FrameTimer mFrameTimer;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private QrKeyPartListener mListener;
+    private QRDataListener mQrDataListener;
+    private KeyPartValidator mValidator;
+    private volatile boolean mSaveKeyParts = true;
+
+    private final QrChunks.Assembler mChunkAssembler = new QrChunks.Assembler();
+
+    /**
+     * Process arbitrary data.
+     *
+     * @param frameTimer Measures the time until the listener was called.
+     */
+    QrTextProcessor(Context context, FrameTimer frameTimer, QRDataListener listener) {
+        mContext = context;
+        mFrameTimer = frameTimer;
+        mQrDataListener = listener;
+    }
+
+    /**
+     * Process key parts.
+     *
+     * @param frameTimer Measures the time until the listener was called.
+     * @param foreignKey True if key parts of other persons are expected.
+     */
+    QrTextProcessor(Context context, FrameTimer frameTimer, QrKeyPartListener listener, boolean foreignKey) {
+        mContext = context;
+        mFrameTimer = frameTimer;
+        mListener = listener;
+        mValidator = new KeyPartValidator(DatabaseHelper.getHelper(context), foreignKey);
+    }
+
+    /**
+     * Ignore timestamp and name of key parts. Has no effect on arbitrary data.
+     */
+    void setIgnoreKeyPartOrigin(boolean ignoreOrigin) {
+        if (mValidator != null) {
+            mValidator.setIgnoreKeyPartOrigin(ignoreOrigin);
+        }
+    }
+
+    /**
+     * Key parts are saved in the database by default.
+     */
+    void setSaveKeyParts(boolean save) {
+        mSaveKeyParts = save;
+    }
+
+    /**
+     * Decode and check the text of a QR-Code. Texts are processed one after another, so chunks of
+     * large data can be found by multiple threads.
+     *
+     * @param start Time of the detection, used to measure the processing time.
+     */
+    synchronized void process(String data, long start) {
+        if (mQrDataListener != null) {
+            // arbitrary data found
+            deliverData(data, start);
+            return;
+        }
+
+        final KeyPartImpl keyPart = mValidator.validate(data);
+
+        if (keyPart != null && mSaveKeyParts && !mValidator.isIgnoringKeyPartOrigin()) {
+            saveAndNotify(keyPart, start);
+            return;
+        }
+
+        notifyListener(new Runnable() {
+            @Override
+            public void run() {
+                if (keyPart == null) {
+                    mListener.wrongSecretPart();
+                } else {
+                    mListener.qrCodeDetected(keyPart);
+                }
+            }
+        }, start);
+    }
+
+    /**
+     * Call the listener on the UI thread.
+     */
+    private void notifyListener(final Runnable callback, final long start) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.run();
+                mFrameTimer.pipelineFinished(start);
+            }
+        });
+    }
+
+    /**
+     * Pass scanned data to the data listener. Data that was split into multiple QR-Codes is
+     * passed after all parts were scanned.
+     */
+    private void deliverData(final String data, long start) {
+        if (!QrChunks.isChunk(data)) {
+            notifyListener(new Runnable() {
+                @Override
+                public void run() {
+                    mQrDataListener.onDetected(data);
+                }
+            }, start);
+            return;
+        }
+
+        boolean newChunk;
+        try {
+            newChunk = mChunkAssembler.add(data);
+        } catch (IllegalArgumentException e) {
+            // damaged chunk, keep scanning
+            return;
+        }
+
+        if (!newChunk) {
+            // same QR-Code is detected in many frames
+            return;
+        }
+
+        final int received = mChunkAssembler.getReceivedCount();
+        final int total = mChunkAssembler.getTotalCount();
+        String text = null;
+
+        if (mChunkAssembler.isComplete()) {
+            // assembler is reset if the checksum does not match so that all parts can be scanned again
+            text = mChunkAssembler.getText();
+
+            if (text != null) {
+                mChunkAssembler.reset();
+            }
+        }
+
+        final String completeText = text;
+        notifyListener(new Runnable() {
+            @Override
+            public void run() {
+                if (mQrDataListener instanceof QrChunkListener) {
+                    ((QrChunkListener) mQrDataListener).chunkDetected(received, total);
+                }
+
+                if (completeText != null) {
+                    mQrDataListener.onDetected(completeText);
+                }
+            }
+        }, start);
+    }
+
+    /**
+     * Save the key part on the database writer thread and notify the listener afterwards. Listeners
+     * that implement {@link QrKeyPartSaveListener} are notified if the key part could not be saved
+     * or was saved before.
+     */
+    private void saveAndNotify(final KeyPartImpl keyPart, final long start) {
+        DatabaseExecutor.getInstance().write(new Callable<KeyPartImpl>() {
+            @Override
+            public KeyPartImpl call() {
+                keyPart.save(mContext);
+                return keyPart;
+            }
+        }, new ResultListener<KeyPartImpl>() {
+            @Override
+            public void onResult(KeyPartImpl result) {
+                if (result.getId() != -1) {
+                    mListener.qrCodeDetected(result);
+                } else if (result.isForeign()) {
+                    // the trigger of the key part table ignored a foreign key part that is already saved
+                    if (mListener instanceof QrKeyPartSaveListener) {
+                        ((QrKeyPartSaveListener) mListener).duplicateKeyPart(result);
+                    }
+                } else {
+                    notSaved(result, new SQLException("Could not insert scanned key part"));
+                }
+                mFrameTimer.pipelineFinished(start);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                notSaved(keyPart, e);
+                mFrameTimer.pipelineFinished(start);
+            }
+        });
+    }
+
+    private void notSaved(KeyPartImpl keyPart, Exception e) {
+        Log.e(TAG, "Could not save scanned key part", e);
+
+        if (mListener instanceof QrKeyPartSaveListener) {
+            ((QrKeyPartSaveListener) mListener).keyPartNotSaved(keyPart, e);
+        }
+    }
+}
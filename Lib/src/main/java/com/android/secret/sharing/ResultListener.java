@@ -0,0 +1,22 @@
+package com.android.secret.sharing;
+
+/**
+ * Receives the result of an operation that was executed in the background.
+ */
+public interface ResultListener<T> {
+
+    /**
+     * Operation finished. Called on the main thread.
+     *
+     * @param result Result of the operation.
+     */
+    void onResult(T result);
+
+    /**
+     * Operation failed, e.g. because the database could not be written. Called on the main thread
+     * instead of {@link #onResult(Object)}.
+     *
+     * @param e Cause of the failure.
+     */
+    void onError(Exception e);
+}
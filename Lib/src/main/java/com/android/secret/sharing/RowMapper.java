@@ -0,0 +1,15 @@
+package com.android.secret.sharing;
+
+import android.database.Cursor;
+
+/**
+ * Maps the current row of a cursor to an object. Column indices are looked up once when the
+ * mapper is created, so create one mapper per query and reuse it for every row.
+ */
+interface RowMapper<T> {
+
+    /**
+     * Create an object from the row the cursor is currently positioned at.
+     */
+    T map(Cursor cursor);
+}
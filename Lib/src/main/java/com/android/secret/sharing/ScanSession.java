@@ -0,0 +1,168 @@
+package com.android.secret.sharing;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.SurfaceView;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Scans key parts one after another with a running camera until enough distinct key parts are
+ * available to restore a backup. The backup is restored in the background as soon as the minimum
+ * count of key parts was scanned.
+ */
+public class ScanSession {
+    private static final String TAG = "ScanSession";
+
+    private static final ExecutorService mRestoreExecutor = Executors.newSingleThreadExecutor(new BackgroundThreadFactory("Backup restore"));
+
+    private final QrReader mQrReader;
+    private final Container mContainer;
+    private final String mEncryptedBackup;
+    private final ScanSessionListener mListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // distinct key parts by content
+    private final Map<ByteBuffer, KeyPartImpl> mKeyParts = new LinkedHashMap<>();
+    private int mRequired;
+    private boolean mRestoring;
+    private boolean mFinished;
+
+    /**
+     * @param container         Container that created the backup.
+     * @param encryptedBackup   Backup to restore.
+     */
+    ScanSession(Activity activity, SurfaceView surfaceView, Container container, String encryptedBackup, ScanSessionListener listener) {
+        mContainer = container;
+        mEncryptedBackup = encryptedBackup;
+        mListener = listener;
+        mRequired = container.getMinimumRecoverParts();
+
+        mQrReader = new QrReader(activity, surfaceView, mKeyPartListener, false);
+        mQrReader.setSaveKeyParts(false);
+    }
+
+    /**
+     * Show the camera and start scanning. Requests camera permission first.
+     */
+    public void start() {
+        mQrReader.showQRReader();
+    }
+
+    /**
+     * Stop scanning and release the camera.
+     */
+    public void stop() {
+        mQrReader.stop(true);
+    }
+
+    /**
+     * Ignore timestamp and name of scanned key parts. Needed when backup should be restored on another device.
+     */
+    public void setIgnoreKeyPartOrigin(boolean ignoreOrigin) {
+        mQrReader.setIgnoreKeyPartOrigin(ignoreOrigin);
+    }
+
+    /**
+     * @return Count of distinct key parts scanned so far.
+     */
+    public int getReceivedCount() {
+        return mKeyParts.size();
+    }
+
+    /**
+     * @return Count of key parts needed to restore the backup. 0 if unknown until the first key
+     * part is scanned.
+     */
+    public int getRequiredCount() {
+        return mRequired;
+    }
+
+    QrReader getQrReader() {
+        return mQrReader;
+    }
+
+    private final QrKeyPartListener mKeyPartListener = new QrKeyPartListener() {
+        @Override
+        public void qrCodeDetected(SecretPresentation secret) {
+            if (mRestoring || mFinished) {
+                return;
+            }
+
+            KeyPartImpl keyPart = (KeyPartImpl) secret;
+            ByteBuffer content = ByteBuffer.wrap(keyPart.getEncoded());
+
+            if (mKeyParts.containsKey(content)) {
+                return;
+            }
+            mKeyParts.put(content, keyPart);
+
+            if (mRequired <= 0) {
+                // container of another device, use minimum that was sent with the key part
+                mRequired = keyPart.getSentMinimumKeyParts();
+            }
+
+            mListener.keyPartScanned(mKeyParts.size(), mRequired);
+
+            if (mRequired > 0 && mKeyParts.size() >= mRequired) {
+                restore();
+            }
+        }
+
+        @Override
+        public void wrongSecretPart() {
+            if (!mFinished) {
+                mListener.wrongSecretPart();
+            }
+        }
+    };
+
+    private void restore() {
+        mRestoring = true;
+        final KeyPartImpl[] keyParts = mKeyParts.values().toArray(new KeyPartImpl[mKeyParts.size()]);
+
+        mRestoreExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String secret;
+                try {
+                    secret = mContainer.restoreBackup(keyParts, mEncryptedBackup);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Could not restore backup", e);
+                    secret = null;
+                }
+
+                final String restoredSecret = secret;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        finishRestore(restoredSecret);
+                    }
+                });
+            }
+        });
+    }
+
+    private void finishRestore(String secret) {
+        mRestoring = false;
+
+        if (secret == null) {
+            mKeyParts.clear();
+
+            // forget the key parts detected so far, so they are delivered again when scanned once more
+            mQrReader.restart();
+            mListener.restoreFailed();
+            return;
+        }
+
+        mFinished = true;
+        stop();
+        mListener.backupRestored(secret);
+    }
+}
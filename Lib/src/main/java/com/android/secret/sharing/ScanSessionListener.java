@@ -0,0 +1,33 @@
+package com.android.secret.sharing;
+
+/**
+ * Receives the progress of a {@link ScanSession}. Methods are called on the UI thread.
+ */
+public interface ScanSessionListener {
+
+    /**
+     * A new key part was scanned. Key parts that were scanned before are not reported again.
+     *
+     * @param received  Count of distinct key parts scanned so far.
+     * @param required  Count of key parts needed to restore the backup.
+     */
+    void keyPartScanned(int received, int required);
+
+    /**
+     * Scanned QR-Code is no key part of the backup.
+     */
+    void wrongSecretPart();
+
+    /**
+     * Enough key parts were scanned and the backup was restored. The camera is released.
+     *
+     * @param secret Decrypted secret of the backup.
+     */
+    void backupRestored(String secret);
+
+    /**
+     * The backup could not be restored with the scanned key parts. Scanned key parts are discarded
+     * and the session keeps scanning.
+     */
+    void restoreFailed();
+}
@@ -4,6 +4,7 @@ import android.provider.BaseColumns;
 
 final class SecretSharingContract {
     private static final String CREATE_TABLE = "CREATE TABLE ";
+    private static final String CREATE_INDEX = "CREATE INDEX IF NOT EXISTS ";
     private static final String PRIMARY_KEY = " PRIMARY KEY";
     private static final String TEXT_TYPE = " TEXT";
     private static final String INTEGER_TYPE = " INTEGER";
@@ -49,6 +50,10 @@ final class SecretSharingContract {
                         COLUMN_STORE_METHOD            + TEXT_TYPE + COMMA_SEP +
                         COLUMN_CLOUD_PATH              + TEXT_TYPE +
                 ");";
+
+        // backups are listed ordered by creation time
+        public static final String CREATE_INDEX_TIMESTAMP =
+                CREATE_INDEX + "backup_timestamp_index ON " + TABLE_NAME + " (" + COLUMN_TIMESTAMP + ");";
     }
 
     static final class Contact implements BaseColumns {
@@ -77,6 +82,18 @@ final class SecretSharingContract {
                         "FOREIGN KEY(" + COLUMN_Container_ID + ") REFERENCES " + Container.TABLE_NAME + "(" + Container._ID + ")" + COMMA_SEP +
                         "FOREIGN KEY(" + COLUMN_KEY_PART_ID + ") REFERENCES " + KeyPart.TABLE_NAME + "(" + KeyPart._ID + ")" +
                 ");";
+
+        public static final String CREATE_INDEX_SEND_STATUS =
+                CREATE_INDEX + "contact_send_status_index ON " + TABLE_NAME + " (" + COLUMN_SEND_STATUS + ");";
+
+        // covers selection and sort order of the contacts of a container
+        public static final String CREATE_INDEX_CONTAINER =
+                CREATE_INDEX + "contact_container_index ON " + TABLE_NAME + " (" +
+                        COLUMN_Container_ID + COMMA_SEP + COLUMN_NAME + COMMA_SEP + COLUMN_CONTACT_ID + ");";
+
+        // lookup of contacts that are linked to a key part
+        public static final String CREATE_INDEX_KEY_PART =
+                CREATE_INDEX + "contact_key_part_index ON " + TABLE_NAME + " (" + COLUMN_KEY_PART_ID + ");";
     }
 
     static final class KeyPart implements BaseColumns {
@@ -102,5 +119,38 @@ final class SecretSharingContract {
                         "FOREIGN KEY(" + COLUMN_Container_ID + ") REFERENCES " + Container.TABLE_NAME + "(" + Container._ID + ")" +
                 ");";
 
+        // bind arguments in this order, see KeyPartImpl#bindInsert
+        public static final String INSERT =
+                "INSERT INTO " + TABLE_NAME + " (" +
+                        COLUMN_KEY_PART + COMMA_SEP +
+                        COLUMN_TIMESTAMP + COMMA_SEP +
+                        COLUMN_Container_ID + COMMA_SEP +
+                        COLUMN_OWNER + COMMA_SEP +
+                        COLUMN_IS_FOREIGN +
+                ") VALUES (?, ?, ?, ?, ?);";
+
+        // covers selection of own and foreign key parts and the sort order of foreign key parts
+        public static final String CREATE_INDEX_FOREIGN_OWNER =
+                CREATE_INDEX + "key_part_foreign_owner_index ON " + TABLE_NAME + " (" + COLUMN_IS_FOREIGN + COMMA_SEP + COLUMN_OWNER + ");";
+
+        // used by the trigger that rejects duplicate foreign key parts. The index holds a copy of every foreign key
+        // part, but they are few and about the size of a private key, so a hash column is not worth a migration.
+        public static final String CREATE_INDEX_FOREIGN_KEY_PART =
+                CREATE_INDEX + "key_part_foreign_content_index ON " + TABLE_NAME + " (" + COLUMN_IS_FOREIGN + COMMA_SEP + COLUMN_KEY_PART + ");";
+
+        // keeps the first stored copy of every foreign key part
+        public static final String DELETE_FOREIGN_DUPLICATES =
+                "DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_IS_FOREIGN + " = 1 AND " + _ID + " NOT IN (" +
+                        "SELECT MIN(" + _ID + ") FROM " + TABLE_NAME + " WHERE " + COLUMN_IS_FOREIGN + " = 1 GROUP BY " + COLUMN_KEY_PART +
+                ");";
+
+        // foreign key parts are unique by content; inserting a received key part again is silently ignored.
+        // A trigger is used because partial unique indexes need SQLite 3.8 (API level 21).
+        public static final String CREATE_TRIGGER_UNIQUE_FOREIGN =
+                "CREATE TRIGGER IF NOT EXISTS key_part_unique_foreign BEFORE INSERT ON " + TABLE_NAME +
+                        " WHEN NEW." + COLUMN_IS_FOREIGN + " = 1 AND EXISTS (" +
+                        "SELECT 1 FROM " + TABLE_NAME + " WHERE " + COLUMN_IS_FOREIGN + " = 1 AND " + COLUMN_KEY_PART + " = NEW." + COLUMN_KEY_PART +
+                        ")" +
+                " BEGIN SELECT RAISE(IGNORE); END;";
     }
 }
@@ -0,0 +1,69 @@
+package com.android.secret.sharing;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Caches compiled statements of an open database for frequent lookups of a single value. The
+ * statements are only valid as long as the database is open, so the cache must be cleared
+ * before the database is closed.
+ */
+class StatementCache {
+    private static final String TAG = "StatementCache";
+
+    private final Map<String, SQLiteStatement> mStatements = new HashMap<>();
+
+    private long mHits;
+    private long mMisses;
+
+    /**
+     * Execute a query that returns a single number.
+     *
+     * @param sql           Query with one result column.
+     * @param defaultValue  Returned if the query has no result.
+     * @param bindArgs      Arguments of the query.
+     */
+    synchronized long queryForLong(SQLiteDatabase db, String sql, long defaultValue, String... bindArgs) {
+        SQLiteStatement statement = getStatement(db, sql);
+        statement.bindAllArgsAsStrings(bindArgs);
+
+        try {
+            return statement.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            // query has no result
+            return defaultValue;
+        }
+    }
+
+    private SQLiteStatement getStatement(SQLiteDatabase db, String sql) {
+        SQLiteStatement statement = mStatements.get(sql);
+
+        if (statement == null) {
+            mMisses++;
+            statement = db.compileStatement(sql);
+            mStatements.put(sql, statement);
+        } else {
+            mHits++;
+        }
+
+        return statement;
+    }
+
+    /**
+     * Close all cached statements. The hit and miss counts since the cache was created are logged.
+     */
+    synchronized void clear() {
+        Log.d(TAG, String.format(Locale.US, "Closing %d statements, %d hits, %d misses", mStatements.size(), mHits, mMisses));
+
+        for (SQLiteStatement statement : mStatements.values()) {
+            statement.close();
+        }
+        mStatements.clear();
+    }
+}
@@ -0,0 +1,226 @@
+package com.android.secret.sharing;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BackupCipherTest {
+    // spans several chunks of the stream format
+    private static final int LARGE_LENGTH = 200 * 1024;
+
+    private static KeyPair mKeyPair;
+
+    @BeforeClass
+    public static void createKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        mKeyPair = generator.generateKeyPair();
+    }
+
+    @Test
+    public void version1_roundTrip() throws Exception {
+        byte[] secret = text(1000);
+
+        byte[] encrypted = BackupCipher.encrypt(mKeyPair.getPublic(), secret, false);
+
+        assertTrue(BackupCipher.isEncrypted(encrypted));
+        assertArrayEquals(secret, BackupCipher.decrypt(mKeyPair.getPrivate(), encrypted));
+    }
+
+    @Test
+    public void version1_compressedRoundTrip() throws Exception {
+        byte[] secret = text(10000);
+
+        byte[] compressed = BackupCipher.encrypt(mKeyPair.getPublic(), secret, true);
+        byte[] uncompressed = BackupCipher.encrypt(mKeyPair.getPublic(), secret, false);
+
+        assertTrue(compressed.length < uncompressed.length);
+        assertArrayEquals(secret, BackupCipher.decrypt(mKeyPair.getPrivate(), compressed));
+    }
+
+    @Test
+    public void version1_incompressibleSecret() throws Exception {
+        byte[] secret = random(1000);
+
+        byte[] encrypted = BackupCipher.encrypt(mKeyPair.getPublic(), secret, true);
+
+        assertArrayEquals(secret, BackupCipher.decrypt(mKeyPair.getPrivate(), encrypted));
+    }
+
+    @Test
+    public void version1_emptySecret() throws Exception {
+        byte[] encrypted = BackupCipher.encrypt(mKeyPair.getPublic(), new byte[0], true);
+
+        assertTrue(BackupCipher.isEncrypted(encrypted));
+        assertEquals(0, BackupCipher.decrypt(mKeyPair.getPrivate(), encrypted).length);
+    }
+
+    @Test
+    public void version1_readAsStream() throws Exception {
+        byte[] secret = text(1000);
+        byte[] encrypted = BackupCipher.encrypt(mKeyPair.getPublic(), secret, true);
+
+        assertArrayEquals(secret, readAll(BackupCipher.decrypt(mKeyPair.getPrivate(), new ByteArrayInputStream(encrypted))));
+    }
+
+    @Test
+    public void version2_roundTrip() throws Exception {
+        byte[] secret = random(LARGE_LENGTH);
+
+        byte[] encrypted = encryptStream(secret, false);
+
+        assertTrue(BackupCipher.isEncrypted(encrypted));
+        assertArrayEquals(secret, readAll(BackupCipher.decrypt(mKeyPair.getPrivate(), new ByteArrayInputStream(encrypted))));
+        assertArrayEquals(secret, BackupCipher.decrypt(mKeyPair.getPrivate(), encrypted));
+    }
+
+    @Test
+    public void version2_compressedRoundTrip() throws Exception {
+        byte[] secret = text(LARGE_LENGTH);
+
+        byte[] compressed = encryptStream(secret, true);
+
+        assertTrue(compressed.length < encryptStream(secret, false).length);
+        assertArrayEquals(secret, readAll(BackupCipher.decrypt(mKeyPair.getPrivate(), new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void version2_emptySecret() throws Exception {
+        byte[] encrypted = encryptStream(new byte[0], false);
+
+        assertEquals(0, readAll(BackupCipher.decrypt(mKeyPair.getPrivate(), new ByteArrayInputStream(encrypted))).length);
+    }
+
+    @Test(expected = GeneralSecurityException.class)
+    public void version1_rejectsTamperedMac() throws Exception {
+        byte[] encrypted = BackupCipher.encrypt(mKeyPair.getPublic(), text(1000), false);
+        encrypted[encrypted.length - 1] ^= 1;
+
+        BackupCipher.decrypt(mKeyPair.getPrivate(), encrypted);
+    }
+
+    @Test(expected = GeneralSecurityException.class)
+    public void version1_rejectsTamperedData() throws Exception {
+        byte[] encrypted = BackupCipher.encrypt(mKeyPair.getPublic(), text(1000), false);
+        encrypted[encrypted.length - 100] ^= 1;
+
+        BackupCipher.decrypt(mKeyPair.getPrivate(), encrypted);
+    }
+
+    @Test(expected = IOException.class)
+    public void version2_rejectsTamperedMac() throws Exception {
+        byte[] encrypted = encryptStream(random(LARGE_LENGTH), false);
+        encrypted[encrypted.length - 1] ^= 1;
+
+        readAll(BackupCipher.decrypt(mKeyPair.getPrivate(), new ByteArrayInputStream(encrypted)));
+    }
+
+    @Test(expected = IOException.class)
+    public void version2_rejectsTruncatedBackup() throws Exception {
+        byte[] encrypted = encryptStream(random(LARGE_LENGTH), false);
+
+        // removes the last chunk
+        byte[] truncated = Arrays.copyOf(encrypted, encrypted.length - 1000);
+        readAll(BackupCipher.decrypt(mKeyPair.getPrivate(), new ByteArrayInputStream(truncated)));
+    }
+
+    @Test
+    public void version1_streamStaysOpenOnFailure() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+
+        byte[] encrypted = BackupCipher.encrypt(mKeyPair.getPublic(), text(1000), false);
+        BufferedInputStream in = new BufferedInputStream(new ByteArrayInputStream(encrypted));
+        in.mark(Integer.MAX_VALUE);
+
+        try {
+            BackupCipher.decrypt(generator.generateKeyPair().getPrivate(), in);
+            fail("Decrypted with another key");
+        } catch (GeneralSecurityException e) {
+            // expected
+        }
+
+        // the caller reads the backup again in the older format
+        in.reset();
+        assertArrayEquals(encrypted, readAll(in));
+    }
+
+    @Test(expected = GeneralSecurityException.class)
+    public void rejectsOtherKey() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+
+        byte[] encrypted = BackupCipher.encrypt(mKeyPair.getPublic(), text(1000), false);
+        BackupCipher.decrypt(generator.generateKeyPair().getPrivate(), encrypted);
+    }
+
+    @Test
+    public void isEncrypted_legacyBackup() throws Exception {
+        // older backups were stored as base64 text
+        assertFalse(BackupCipher.isEncrypted("U0tCQUsAAQABAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA".getBytes("US-ASCII")));
+        assertFalse(BackupCipher.isEncrypted(new byte[0]));
+        assertFalse(BackupCipher.hasHeader(new byte[BackupCipher.HEADER_LENGTH]));
+    }
+
+    @Test
+    public void isEncrypted_truncatedHeader() throws Exception {
+        byte[] encrypted = BackupCipher.encrypt(mKeyPair.getPublic(), text(100), false);
+
+        assertTrue(BackupCipher.hasHeader(Arrays.copyOf(encrypted, BackupCipher.HEADER_LENGTH)));
+        assertFalse(BackupCipher.isEncrypted(Arrays.copyOf(encrypted, BackupCipher.HEADER_LENGTH + 10)));
+    }
+
+    private static byte[] encryptStream(byte[] secret, boolean compress) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        OutputStream encrypting = BackupCipher.encrypt(mKeyPair.getPublic(), out, compress);
+        encrypting.write(secret);
+        encrypting.close();
+
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            BackupCipher.copy(in, out);
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return Text that compresses well, similar to a key or document stored as a secret.
+     */
+    static byte[] text(int length) {
+        StringBuilder text = new StringBuilder(length);
+        Random random = new Random(length);
+
+        while (text.length() < length) {
+            text.append("{\"name\":\"key ").append(random.nextInt(100)).append("\",\"value\":\"").append(random.nextInt()).append("\"},\n");
+        }
+        text.setLength(length);
+
+        return text.toString().getBytes();
+    }
+
+    static byte[] random(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+}
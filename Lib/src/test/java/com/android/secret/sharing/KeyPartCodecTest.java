@@ -0,0 +1,171 @@
+package com.android.secret.sharing;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class KeyPartCodecTest {
+    private static final byte[] KEY = new byte[] { 0, 1, 2, 127, -128, -1, 42 };
+    private static final long TIMESTAMP = 1476712345678L;
+
+    @Test
+    public void roundTrip_keepsAllFields() throws Exception {
+        KeyPartImpl keyPart = KeyPartCodec.decode(KeyPartCodec.encode(KEY, TIMESTAMP, "Alice \u00dcnl\u00fc", 3));
+
+        assertArrayEquals(KEY, keyPart.getEncoded());
+        assertEquals(TIMESTAMP, keyPart.getTimestamp());
+        assertEquals("Alice \u00dcnl\u00fc", keyPart.getOwner());
+        assertEquals(3, keyPart.getSentMinimumKeyParts());
+    }
+
+    @Test
+    public void roundTrip_withoutOwner() throws Exception {
+        KeyPartImpl keyPart = KeyPartCodec.decode(KeyPartCodec.encode(KEY, TIMESTAMP, null, 2));
+
+        assertNull(keyPart.getOwner());
+        assertArrayEquals(KEY, keyPart.getEncoded());
+    }
+
+    @Test
+    public void roundTrip_emptyOwner() throws Exception {
+        KeyPartImpl keyPart = KeyPartCodec.decode(KeyPartCodec.encode(KEY, TIMESTAMP, "", 2));
+
+        assertEquals("", keyPart.getOwner());
+    }
+
+    @Test
+    public void encode_usesOnlyAlphanumericQrCharacters() throws Exception {
+        String text = KeyPartCodec.encode(KEY, TIMESTAMP, "owner", 3);
+
+        assertTrue(text, text.matches("[0-9A-Z $%*+\\-./:]+"));
+    }
+
+    @Test
+    public void decode_legacyJson() throws Exception {
+        KeyPartImpl legacy = new KeyPartImpl(KEY, TIMESTAMP, "Alice", 3);
+        String json = new KeyPartJsonAdapter().toJson(legacy);
+
+        KeyPartImpl keyPart = KeyPartCodec.decode(json);
+
+        assertArrayEquals(KEY, keyPart.getEncoded());
+        assertEquals(TIMESTAMP, keyPart.getTimestamp());
+        assertEquals("Alice", keyPart.getOwner());
+        assertEquals(3, keyPart.getSentMinimumKeyParts());
+    }
+
+    @Test
+    public void decode_legacyJsonWithInternalFields() throws Exception {
+        String json = "{\"mId\":12,\"mContainerId\":1,\"mKey\":[1,2,3],\"mTimestamp\":5,\"mOwner\":null,\"mIsForeign\":false,\"mMinimumKeyParts\":2}";
+
+        KeyPartImpl keyPart = KeyPartCodec.decode(json);
+
+        assertArrayEquals(new byte[] { 1, 2, 3 }, keyPart.getEncoded());
+        assertEquals(5, keyPart.getTimestamp());
+        assertNull(keyPart.getOwner());
+        assertEquals(2, keyPart.getSentMinimumKeyParts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_jsonWithoutKey() throws Exception {
+        KeyPartCodec.decode("{\"mTimestamp\":5}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_malformedJson() throws Exception {
+        KeyPartCodec.decode("{\"mKey\":[1,");
+    }
+
+    @Test
+    public void roundTrip_emptyKeyPart() throws Exception {
+        KeyPartImpl keyPart = KeyPartCodec.decode(KeyPartCodec.encode(new byte[0], TIMESTAMP, "owner", 3));
+
+        assertEquals(0, keyPart.getEncoded().length);
+        assertEquals("owner", keyPart.getOwner());
+    }
+
+    @Test
+    public void roundTrip_maximumVarints() throws Exception {
+        KeyPartImpl keyPart = KeyPartCodec.decode(KeyPartCodec.encode(KEY, Long.MAX_VALUE, null, Integer.MAX_VALUE));
+
+        assertEquals(Long.MAX_VALUE, keyPart.getTimestamp());
+        assertEquals(Integer.MAX_VALUE, keyPart.getSentMinimumKeyParts());
+    }
+
+    @Test
+    public void roundTrip_negativeVarints() throws Exception {
+        // written as unsigned values with all 64 bits
+        KeyPartImpl keyPart = KeyPartCodec.decode(KeyPartCodec.encode(KEY, -1, null, -1));
+
+        assertEquals(-1, keyPart.getTimestamp());
+        assertEquals(-1, keyPart.getSentMinimumKeyParts());
+    }
+
+    @Test
+    public void base45_knownValues() throws Exception {
+        assertEquals("BB8", KeyPartCodec.encodeBase45("AB".getBytes("US-ASCII")));
+        assertEquals("%69 VD92EX0", KeyPartCodec.encodeBase45("Hello!!".getBytes("US-ASCII")));
+        assertEquals("UJCLQE7W581", KeyPartCodec.encodeBase45("base-45".getBytes("US-ASCII")));
+        assertArrayEquals("ietf!".getBytes("US-ASCII"), KeyPartCodec.decodeBase45("QED8WEX0"));
+    }
+
+    @Test
+    public void base45_roundTripAllBytes() throws Exception {
+        byte[] data = new byte[257];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        assertArrayEquals(data, KeyPartCodec.decodeBase45(KeyPartCodec.encodeBase45(data)));
+        assertEquals("", KeyPartCodec.encodeBase45(new byte[0]));
+        assertEquals(0, KeyPartCodec.decodeBase45("").length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeBase45_lowerCaseCharacter() throws Exception {
+        KeyPartCodec.decodeBase45("bb8");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeBase45_invalidCharacter() throws Exception {
+        KeyPartCodec.decodeBase45("B#8");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeBase45_invalidLength() throws Exception {
+        KeyPartCodec.decodeBase45("BB8B");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeBase45_groupTooLarge() throws Exception {
+        KeyPartCodec.decodeBase45(":::");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_truncated() throws Exception {
+        String text = KeyPartCodec.encode(KEY, TIMESTAMP, "owner", 3);
+
+        KeyPartCodec.decode(text.substring(0, text.length() - 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_wrongMagic() throws Exception {
+        KeyPartCodec.decode(KeyPartCodec.encodeBase45(new byte[] { 0x12, 1, 0, 0, 0, 0 }));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_unsupportedVersion() throws Exception {
+        KeyPartCodec.decode(KeyPartCodec.encodeBase45(new byte[] { 0x53, 2, 0, 0, 0, 0 }));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_varintTooLong() throws Exception {
+        byte[] data = new byte[16];
+        data[0] = 0x53;
+        data[1] = 1;
+        for (int i = 2; i < data.length; i++) {
+            data[i] = (byte) 0x80;
+        }
+
+        KeyPartCodec.decode(KeyPartCodec.encodeBase45(data));
+    }
+}
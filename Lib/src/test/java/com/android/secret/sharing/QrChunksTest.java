@@ -0,0 +1,157 @@
+package com.android.secret.sharing;
+
+import org.junit.Test;
+
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+public class QrChunksTest {
+    private static final int MAXIMUM_LENGTH = 100;
+
+    @Test
+    public void split_shortTextIsSingleQrCode() throws Exception {
+        String[] chunks = QrChunks.split("short", MAXIMUM_LENGTH);
+
+        assertEquals(1, chunks.length);
+        assertEquals("short", chunks[0]);
+        assertFalse(QrChunks.isChunk(chunks[0]));
+    }
+
+    @Test
+    public void split_chunksFitIntoQrCode() throws Exception {
+        String[] chunks = QrChunks.split(text(1000), MAXIMUM_LENGTH);
+
+        assertTrue(chunks.length > 1);
+        for (String chunk : chunks) {
+            assertTrue(QrChunks.isChunk(chunk));
+            assertTrue(chunk, chunk.length() <= MAXIMUM_LENGTH);
+        }
+    }
+
+    @Test
+    public void assemble_inOrder() throws Exception {
+        String text = text(1000);
+        QrChunks.Assembler assembler = new QrChunks.Assembler();
+
+        for (String chunk : QrChunks.split(text, MAXIMUM_LENGTH)) {
+            assertTrue(assembler.add(chunk));
+        }
+
+        assertTrue(assembler.isComplete());
+        assertEquals(text, assembler.getText());
+    }
+
+    @Test
+    public void assemble_outOfOrder() throws Exception {
+        String text = text(1000);
+        String[] chunks = QrChunks.split(text, MAXIMUM_LENGTH);
+        QrChunks.Assembler assembler = new QrChunks.Assembler();
+
+        for (int i = chunks.length - 1; i >= 0; i--) {
+            assertNull(assembler.getText());
+            assertTrue(assembler.add(chunks[i]));
+        }
+
+        assertEquals(chunks.length, assembler.getTotalCount());
+        assertEquals(text, assembler.getText());
+    }
+
+    @Test
+    public void assemble_duplicateChunk() throws Exception {
+        String[] chunks = QrChunks.split(text(1000), MAXIMUM_LENGTH);
+        QrChunks.Assembler assembler = new QrChunks.Assembler();
+
+        assertTrue(assembler.add(chunks[1]));
+        assertFalse(assembler.add(chunks[1]));
+
+        assertEquals(1, assembler.getReceivedCount());
+        assertFalse(assembler.isComplete());
+    }
+
+    @Test
+    public void assemble_singleChunk() throws Exception {
+        String text = text(50);
+        CRC32 crc = new CRC32();
+        crc.update(text.getBytes("UTF-8"));
+        QrChunks.Assembler assembler = new QrChunks.Assembler();
+
+        assertTrue(assembler.add("SKC:1/1:" + String.format("%08x", crc.getValue()) + ":" + text));
+
+        assertEquals(1, assembler.getTotalCount());
+        assertTrue(assembler.isComplete());
+        assertEquals(text, assembler.getText());
+    }
+
+    @Test
+    public void assemble_wrongChecksumIsDiscarded() throws Exception {
+        String[] chunks = QrChunks.split(text(1000), MAXIMUM_LENGTH);
+        QrChunks.Assembler assembler = new QrChunks.Assembler();
+
+        for (String chunk : chunks) {
+            assembler.add(withChecksum(chunk, "00000000"));
+        }
+
+        assertTrue(assembler.isComplete());
+        assertNull(assembler.getText());
+        assertFalse(assembler.isComplete());
+    }
+
+    @Test
+    public void assemble_chunkOfOtherTextRestarts() throws Exception {
+        String text = text(1000);
+        String[] chunks = QrChunks.split(text, MAXIMUM_LENGTH);
+        String[] otherChunks = QrChunks.split(text(900) + "other", MAXIMUM_LENGTH);
+        QrChunks.Assembler assembler = new QrChunks.Assembler();
+
+        assembler.add(otherChunks[0]);
+        for (String chunk : chunks) {
+            assembler.add(chunk);
+        }
+
+        assertEquals(text, assembler.getText());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_notAChunk() throws Exception {
+        new QrChunks.Assembler().add("text");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_headerWithoutChecksum() throws Exception {
+        new QrChunks.Assembler().add("SKC:1/2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_headerWithoutSeparator() throws Exception {
+        new QrChunks.Assembler().add("SKC:12:0badc0de:text");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_headerWithInvalidNumber() throws Exception {
+        new QrChunks.Assembler().add("SKC:x/2:0badc0de:text");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_indexGreaterThanCount() throws Exception {
+        new QrChunks.Assembler().add("SKC:3/2:0badc0de:text");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_indexZero() throws Exception {
+        new QrChunks.Assembler().add("SKC:0/2:0badc0de:text");
+    }
+
+    private static String withChecksum(String chunk, String checksum) {
+        String[] parts = chunk.split(":", 4);
+        return parts[0] + ":" + parts[1] + ":" + checksum + ":" + parts[3];
+    }
+
+    private static String text(int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('A' + i % 26));
+        }
+        return text.toString();
+    }
+}